@@ -0,0 +1,37 @@
+package com.example.aireceiptbackend.config;
+
+import com.example.aireceiptbackend.util.BoundedExecutor;
+import com.example.aireceiptbackend.util.VirtualThreads;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class GeminiExecutorConfig {
+
+    // Runs primary and hedged Gemini requests side by side, and the HTTP side of streamed extractions.
+    @Bean(name = "geminiHedgeExecutor", destroyMethod = "shutdown")
+    public ExecutorService geminiHedgeExecutor(
+        @Value("${gemini.hedge.max-threads:64}") int maxThreads,
+        @Value("${app.execution.virtual-threads.enabled:false}") boolean virtualThreadsEnabled
+    ) {
+        if (virtualThreadsEnabled && VirtualThreads.isSupported()) {
+            return new BoundedExecutor(VirtualThreads.newThreadPerTaskExecutor(), Math.max(2, maxThreads));
+        }
+        return new ThreadPoolExecutor(
+            0,
+            Math.max(2, maxThreads),
+            60L,
+            TimeUnit.SECONDS,
+            new SynchronousQueue<>(),
+            new CustomizableThreadFactory("gemini-hedge-"),
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+}
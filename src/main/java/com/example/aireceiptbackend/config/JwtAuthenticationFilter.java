@@ -1,6 +1,11 @@
 package com.example.aireceiptbackend.config;
 
+import com.example.aireceiptbackend.model.AuthenticatedUser;
+import com.example.aireceiptbackend.model.UserAuthState;
+import com.example.aireceiptbackend.service.JwtVerificationService;
+import com.example.aireceiptbackend.service.UserResolutionService;
 import com.example.aireceiptbackend.util.JwtUtil;
+import io.jsonwebtoken.Claims;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
@@ -12,9 +17,21 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.Collections;
+import java.util.Optional;
 
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
+    private final JwtVerificationService jwtVerificationService;
+    private final UserResolutionService userResolutionService;
+
+    public JwtAuthenticationFilter(
+        JwtVerificationService jwtVerificationService,
+        UserResolutionService userResolutionService
+    ) {
+        this.jwtVerificationService = jwtVerificationService;
+        this.userResolutionService = userResolutionService;
+    }
+
     @Override
     protected void doFilterInternal(
         HttpServletRequest request,
@@ -24,15 +41,33 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         String authHeader = request.getHeader("Authorization");
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7);
-            String username = JwtUtil.getSubjectFromToken(token);
+            Claims claims = jwtVerificationService.verify(token).orElse(null);
+            String username = claims != null ? claims.getSubject() : null;
             if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                UsernamePasswordAuthenticationToken authentication =
-                    new UsernamePasswordAuthenticationToken(username, null, Collections.emptyList());
-                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                SecurityContextHolder.getContext().setAuthentication(authentication);
+                Object principal = resolvePrincipal(claims, username);
+                if (principal != null) {
+                    UsernamePasswordAuthenticationToken authentication =
+                        new UsernamePasswordAuthenticationToken(principal, null, Collections.emptyList());
+                    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                    SecurityContextHolder.getContext().setAuthentication(authentication);
+                }
             }
         }
 
         filterChain.doFilter(request, response);
     }
+
+    private Object resolvePrincipal(Claims claims, String username) {
+        Long userId = JwtUtil.getUserId(claims);
+        if (userId == null) {
+            // Tokens issued before user claims were added stay valid until they expire.
+            return username;
+        }
+
+        Optional<UserAuthState> state = userResolutionService.getAuthState(userId);
+        if (state.isEmpty() || state.get().getTokenVersion() != JwtUtil.getTokenVersion(claims)) {
+            return null;
+        }
+        return new AuthenticatedUser(userId, username, state.get().getPlan(), state.get().getAccountType());
+    }
 }
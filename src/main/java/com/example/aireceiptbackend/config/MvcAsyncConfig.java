@@ -0,0 +1,54 @@
+package com.example.aireceiptbackend.config;
+
+import com.example.aireceiptbackend.service.StreamingResponseLimiter;
+import com.example.aireceiptbackend.util.VirtualThreads;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+
+@Configuration
+public class MvcAsyncConfig implements WebMvcConfigurer {
+
+    private final int maxStreams;
+    private final boolean virtualThreadsEnabled;
+    private final Duration requestTimeout;
+
+    public MvcAsyncConfig(
+        StreamingResponseLimiter streamingResponseLimiter,
+        @Value("${app.execution.virtual-threads.enabled:false}") boolean virtualThreadsEnabled,
+        @Value("${spring.mvc.async.request-timeout:600000}") Duration requestTimeout
+    ) {
+        this.maxStreams = streamingResponseLimiter.getMaxConcurrent();
+        this.virtualThreadsEnabled = virtualThreadsEnabled;
+        this.requestTimeout = requestTimeout;
+    }
+
+    // Streamed response bodies run here instead of on MVC's default SimpleAsyncTaskExecutor,
+    // which starts a new, unbounded thread for every request.
+    @Bean(name = "mvcAsyncExecutor")
+    public ThreadPoolTaskExecutor mvcAsyncExecutor() {
+        // Twice the stream cap so short error bodies are not stuck behind long streams.
+        int threads = maxStreams * 2;
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(maxStreams);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setThreadNamePrefix("mvc-async-");
+        if (virtualThreadsEnabled && VirtualThreads.isSupported()) {
+            executor.setThreadFactory(VirtualThreads.newThreadFactory("mvc-async-vt-"));
+        }
+        return executor;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(mvcAsyncExecutor());
+        configurer.setDefaultTimeout(requestTimeout.toMillis());
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.aireceiptbackend.config;
+
+import com.example.aireceiptbackend.util.BoundedExecutor;
+import com.example.aireceiptbackend.util.VirtualThreads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class ReceiptParseExecutorConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(ReceiptParseExecutorConfig.class);
+
+    @Bean(name = "receiptParseExecutor", destroyMethod = "shutdown")
+    public ExecutorService receiptParseExecutor(
+        @Value("${app.receipt.parse.worker-count:4}") int workerCount,
+        @Value("${app.receipt.parse.queue-capacity:200}") int queueCapacity,
+        @Value("${app.execution.virtual-threads.enabled:false}") boolean virtualThreadsEnabled,
+        @Value("${app.execution.virtual-threads.parse-concurrency:1000}") int virtualConcurrency
+    ) {
+        if (virtualThreadsEnabled) {
+            if (VirtualThreads.isSupported()) {
+                // One virtual thread per parse, capped by a semaphore instead of the worker pool and its queue.
+                log.info("Running receipt parses on virtual threads, at most {} at once", Math.max(1, virtualConcurrency));
+                return new BoundedExecutor(VirtualThreads.newThreadPerTaskExecutor(), virtualConcurrency);
+            }
+            log.warn("Virtual threads requested but not supported by this JVM; using platform parse workers");
+        }
+
+        int workers = Math.max(1, workerCount);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            workers,
+            workers,
+            60L,
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+            new CustomizableThreadFactory("receipt-parse-"),
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    // Re-reads parse jobs for long-polling clients, so the thread that completed a job never does it.
+    @Bean(name = "receiptJobPollExecutor", destroyMethod = "shutdown")
+    public ExecutorService receiptJobPollExecutor(
+        @Value("${app.receipt.parse.poll-threads:2}") int pollThreads,
+        @Value("${app.receipt.parse.poll-queue-capacity:1000}") int queueCapacity
+    ) {
+        int threads = Math.max(1, pollThreads);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            threads,
+            threads,
+            60L,
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+            new CustomizableThreadFactory("receipt-job-poll-"),
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
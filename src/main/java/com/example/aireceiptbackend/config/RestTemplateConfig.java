@@ -1,21 +1,90 @@
 package com.example.aireceiptbackend.config;
 
+import com.example.aireceiptbackend.util.AbortableHttpCall;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 public class RestTemplateConfig {
 
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager geminiConnectionManager(
+        @Value("${gemini.http.max-connections:50}") int maxConnections,
+        @Value("${gemini.http.max-connections-per-route:50}") int maxConnectionsPerRoute,
+        @Value("${gemini.http.connection-ttl-ms:300000}") long connectionTtlMs,
+        @Value("${gemini.http.validate-after-inactivity-ms:2000}") int validateAfterInactivityMs
+    ) {
+        PoolingHttpClientConnectionManager connectionManager =
+            new PoolingHttpClientConnectionManager(connectionTtlMs, TimeUnit.MILLISECONDS);
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        connectionManager.setValidateAfterInactivity(validateAfterInactivityMs);
+        return connectionManager;
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient geminiHttpClient(
+        @Qualifier("geminiConnectionManager") PoolingHttpClientConnectionManager connectionManager,
+        @Value("${gemini.http.idle-eviction-ms:30000}") long idleEvictionMs
+    ) {
+        return HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .evictExpiredConnections()
+            .evictIdleConnections(idleEvictionMs, TimeUnit.MILLISECONDS)
+            .build();
+    }
+
     @Bean
-    public RestTemplate restTemplate(
-        @Value("${gemini.timeout-ms:20000}") int timeoutMs
+    public RestTemplate geminiRestTemplate(
+        @Qualifier("geminiHttpClient") CloseableHttpClient httpClient,
+        @Value("${gemini.http.connect-timeout-ms:5000}") int connectTimeoutMs,
+        @Value("${gemini.http.connection-request-timeout-ms:5000}") int connectionRequestTimeoutMs,
+        @Value("${gemini.http.read-timeout-ms:${gemini.timeout-ms:20000}}") int readTimeoutMs
     ) {
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(timeoutMs);
-        factory.setReadTimeout(timeoutMs);
+        HttpComponentsClientHttpRequestFactory factory = new HttpComponentsClientHttpRequestFactory(httpClient) {
+            @Override
+            protected void postProcessHttpRequest(HttpUriRequest request) {
+                // Lets a losing hedged request be aborted instead of blocking on its socket read.
+                AbortableHttpCall.attach(request);
+            }
+        };
+        factory.setConnectTimeout(connectTimeoutMs);
+        factory.setConnectionRequestTimeout(connectionRequestTimeoutMs);
+        factory.setReadTimeout(readTimeoutMs);
+        // Request bodies are streamed (image bytes are base64-encoded on the fly), never buffered in memory.
+        factory.setBufferRequestBody(false);
         return new RestTemplate(factory);
     }
+
+    @Bean
+    public MeterBinder geminiConnectionPoolMetrics(
+        @Qualifier("geminiConnectionManager") PoolingHttpClientConnectionManager connectionManager
+    ) {
+        return registry -> {
+            Gauge.builder("gemini.http.pool.leased", connectionManager, cm -> cm.getTotalStats().getLeased())
+                .description("Gemini HTTP connections currently in use")
+                .register(registry);
+            Gauge.builder("gemini.http.pool.available", connectionManager, cm -> cm.getTotalStats().getAvailable())
+                .description("Idle Gemini HTTP connections kept alive in the pool")
+                .register(registry);
+            Gauge.builder("gemini.http.pool.pending", connectionManager, cm -> cm.getTotalStats().getPending())
+                .description("Requests waiting to lease a Gemini HTTP connection")
+                .register(registry);
+            Gauge.builder("gemini.http.pool.max", connectionManager, cm -> cm.getTotalStats().getMax())
+                .description("Maximum Gemini HTTP connections")
+                .register(registry);
+        };
+    }
 }
@@ -1,5 +1,7 @@
 package com.example.aireceiptbackend.config;
 
+import com.example.aireceiptbackend.service.JwtVerificationService;
+import com.example.aireceiptbackend.service.UserResolutionService;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -13,6 +15,14 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 @Configuration
 public class SecurityConfig extends WebSecurityConfigurerAdapter {
 
+    private final JwtVerificationService jwtVerificationService;
+    private final UserResolutionService userResolutionService;
+
+    public SecurityConfig(JwtVerificationService jwtVerificationService, UserResolutionService userResolutionService) {
+        this.jwtVerificationService = jwtVerificationService;
+        this.userResolutionService = userResolutionService;
+    }
+
     @Override
     protected void configure(HttpSecurity http) throws Exception {
         http
@@ -35,7 +45,7 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
             .and()
                 .httpBasic().disable();
 
-        http.addFilterBefore(new JwtAuthenticationFilter(), UsernamePasswordAuthenticationFilter.class);
+        http.addFilterBefore(new JwtAuthenticationFilter(jwtVerificationService, userResolutionService), UsernamePasswordAuthenticationFilter.class);
     }
 
     @Bean
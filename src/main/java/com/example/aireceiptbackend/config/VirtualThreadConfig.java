@@ -0,0 +1,31 @@
+package com.example.aireceiptbackend.config;
+
+import com.example.aireceiptbackend.util.VirtualThreads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+
+@Configuration
+@ConditionalOnProperty(name = "app.execution.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        if (!VirtualThreads.isSupported()) {
+            log.warn("Virtual threads requested but not supported by this JVM; Tomcat keeps its platform thread pool");
+            return protocolHandler -> {
+            };
+        }
+
+        ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor();
+        log.info("Serving HTTP requests on virtual threads");
+        return protocolHandler -> protocolHandler.setExecutor(executor);
+    }
+}
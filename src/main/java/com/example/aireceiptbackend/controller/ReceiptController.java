@@ -1,15 +1,25 @@
 package com.example.aireceiptbackend.controller;
 
 import com.example.aireceiptbackend.exception.DailyReceiptLimitExceededException;
+import com.example.aireceiptbackend.exception.GeminiOverloadedException;
+import com.example.aireceiptbackend.model.ReceiptBatchParseRequest;
 import com.example.aireceiptbackend.model.ReceiptDeleteRequest;
 import com.example.aireceiptbackend.model.ReceiptDeleteResponse;
+import com.example.aireceiptbackend.model.ReceiptItemExtraction;
+import com.example.aireceiptbackend.model.ReceiptPageResponse;
 import com.example.aireceiptbackend.model.ReceiptParseResponse;
+import com.example.aireceiptbackend.model.ReceiptParseJobResponse;
 import com.example.aireceiptbackend.model.ReceiptParseRequest;
 import com.example.aireceiptbackend.model.ReceiptReviewRequest;
 import com.example.aireceiptbackend.model.ReceiptStatsResponse;
 import com.example.aireceiptbackend.model.ReceiptUpdateRequest;
 import com.example.aireceiptbackend.model.CategorySpendingStatsResponse;
+import com.example.aireceiptbackend.service.ReceiptExtractor;
+import com.example.aireceiptbackend.service.ReceiptParseJobService;
 import com.example.aireceiptbackend.service.ReceiptParsingService;
+import com.example.aireceiptbackend.service.StreamingResponseLimiter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -24,32 +34,63 @@ import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @RestController
 @RequestMapping("/receipts")
 public class ReceiptController {
 
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final ReceiptParsingService receiptParsingService;
+    private final ReceiptParseJobService receiptParseJobService;
+    private final StreamingResponseLimiter streamingResponseLimiter;
+    private final ObjectMapper objectMapper;
 
-    public ReceiptController(ReceiptParsingService receiptParsingService) {
+    public ReceiptController(
+        ReceiptParsingService receiptParsingService,
+        ReceiptParseJobService receiptParseJobService,
+        StreamingResponseLimiter streamingResponseLimiter,
+        ObjectMapper objectMapper
+    ) {
         this.receiptParsingService = receiptParsingService;
+        this.receiptParseJobService = receiptParseJobService;
+        this.streamingResponseLimiter = streamingResponseLimiter;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping("/me")
-    public ResponseEntity<?> getMyReceipts() {
+    public ResponseEntity<?> getMyReceipts(
+        @RequestParam(value = "limit", required = false) Integer limit,
+        @RequestParam(value = "cursor", required = false) String cursor,
+        @RequestParam(value = "includeItems", required = false, defaultValue = "false") boolean includeItems
+    ) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication == null || authentication.getName() == null || "anonymousUser".equals(authentication.getName())) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error("Unauthorized"));
         }
 
         try {
+            if (limit != null || cursor != null) {
+                ReceiptPageResponse page = receiptParsingService.getReceiptPage(
+                    authentication.getName(),
+                    limit,
+                    cursor,
+                    includeItems
+                );
+                return ResponseEntity.ok(page);
+            }
             List<ReceiptParseResponse> responses = receiptParsingService.getReceiptsByUserEmail(authentication.getName());
             return ResponseEntity.ok(responses);
         } catch (IllegalArgumentException ex) {
@@ -128,6 +169,10 @@ public class ReceiptController {
             return ResponseEntity.ok(response);
         } catch (DailyReceiptLimitExceededException ex) {
             return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(error(ex.getMessage()));
+        } catch (GeminiOverloadedException ex) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(error(ex.getMessage()));
         } catch (IllegalArgumentException ex) {
             return ResponseEntity.badRequest().body(error(ex.getMessage()));
         } catch (IllegalStateException ex) {
@@ -135,6 +180,181 @@ public class ReceiptController {
         }
     }
 
+    @PostMapping(value = "/parse/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> parseReceiptBatch(@RequestBody ReceiptBatchParseRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication.getName() == null || "anonymousUser".equals(authentication.getName())) {
+            return streamingError(HttpStatus.UNAUTHORIZED, "Unauthorized");
+        }
+        if (!streamingResponseLimiter.tryAcquire()) {
+            return streamingError(HttpStatus.SERVICE_UNAVAILABLE, "Too many streaming requests, please retry later");
+        }
+
+        ReceiptParsingService.BatchParse batch;
+        try {
+            batch = receiptParsingService.prepareBatchParse(
+                request != null ? request.getImageIds() : null,
+                authentication.getName()
+            );
+        } catch (DailyReceiptLimitExceededException ex) {
+            streamingResponseLimiter.release();
+            return streamingError(HttpStatus.TOO_MANY_REQUESTS, ex.getMessage());
+        } catch (GeminiOverloadedException ex) {
+            streamingResponseLimiter.release();
+            return streamingError(HttpStatus.SERVICE_UNAVAILABLE, ex.getMessage());
+        } catch (IllegalArgumentException ex) {
+            streamingResponseLimiter.release();
+            return streamingError(HttpStatus.BAD_REQUEST, ex.getMessage());
+        } catch (IllegalStateException ex) {
+            streamingResponseLimiter.release();
+            return streamingError(HttpStatus.BAD_GATEWAY, ex.getMessage());
+        }
+
+        StreamingResponseBody body = output -> {
+            try {
+                AtomicBoolean clientGone = new AtomicBoolean(false);
+                receiptParsingService.runBatchParse(batch, item -> {
+                    if (clientGone.get()) {
+                        return;
+                    }
+                    try {
+                        output.write(objectMapper.writeValueAsBytes(item));
+                        output.write('\n');
+                        output.flush();
+                    } catch (IOException ex) {
+                        // Keep processing so the batch is still saved; the client can list receipts later.
+                        clientGone.set(true);
+                    }
+                });
+            } finally {
+                streamingResponseLimiter.release();
+            }
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    @PostMapping(
+        value = "/parse/stream",
+        consumes = MediaType.APPLICATION_JSON_VALUE,
+        produces = MediaType.TEXT_EVENT_STREAM_VALUE
+    )
+    public ResponseEntity<StreamingResponseBody> parseReceiptStream(@RequestBody ReceiptParseRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication.getName() == null || "anonymousUser".equals(authentication.getName())) {
+            return streamingError(HttpStatus.UNAUTHORIZED, "Unauthorized");
+        }
+        if (!streamingResponseLimiter.tryAcquire()) {
+            return streamingError(HttpStatus.SERVICE_UNAVAILABLE, "Too many streaming requests, please retry later");
+        }
+
+        String principal = authentication.getName();
+        Long imageId = request != null ? request.getImageId() : null;
+        StreamingResponseBody body = output -> {
+            AtomicBoolean clientGone = new AtomicBoolean(false);
+            SseWriter events = (event, data) -> {
+                if (clientGone.get()) {
+                    return;
+                }
+                try {
+                    output.write(("event: " + event + "\ndata: ").getBytes(StandardCharsets.UTF_8));
+                    output.write(objectMapper.writeValueAsBytes(data));
+                    output.write("\n\n".getBytes(StandardCharsets.UTF_8));
+                    output.flush();
+                } catch (IOException ex) {
+                    // Keep extracting so the receipt is still saved; the client can fetch it later.
+                    clientGone.set(true);
+                }
+            };
+
+            try {
+                ReceiptParseResponse response = receiptParsingService.parseAndSaveFromImageIdStreaming(
+                    imageId,
+                    principal,
+                    new ReceiptExtractor.PartialExtractionListener() {
+                        @Override
+                        public void onField(String name, String value) {
+                            Map<String, String> field = new HashMap<>();
+                            field.put("name", name);
+                            field.put("value", value);
+                            events.send("field", field);
+                        }
+
+                        @Override
+                        public void onItem(int index, ReceiptItemExtraction item) {
+                            Map<String, Object> payload = new HashMap<>();
+                            payload.put("index", index);
+                            payload.put("item", item);
+                            events.send("item", payload);
+                        }
+                    }
+                );
+                events.send("receipt", response);
+            } catch (DailyReceiptLimitExceededException ex) {
+                events.send("error", streamError(HttpStatus.TOO_MANY_REQUESTS, ex.getMessage()));
+            } catch (GeminiOverloadedException ex) {
+                Map<String, Object> payload = streamError(HttpStatus.SERVICE_UNAVAILABLE, ex.getMessage());
+                payload.put("retryAfterSeconds", ex.getRetryAfterSeconds());
+                events.send("error", payload);
+            } catch (IllegalArgumentException ex) {
+                events.send("error", streamError(HttpStatus.BAD_REQUEST, ex.getMessage()));
+            } catch (IllegalStateException ex) {
+                events.send("error", streamError(HttpStatus.BAD_GATEWAY, ex.getMessage()));
+            } catch (IOException ex) {
+                events.send("error", streamError(HttpStatus.BAD_GATEWAY, "Failed to read receipt extraction"));
+            } finally {
+                streamingResponseLimiter.release();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.TEXT_EVENT_STREAM).body(body);
+    }
+
+    @PostMapping(value = "/parse/jobs", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> enqueueParseJob(@RequestBody ReceiptParseRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication.getName() == null || "anonymousUser".equals(authentication.getName())) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error("Unauthorized"));
+        }
+
+        try {
+            ReceiptParseJobResponse response = receiptParseJobService.enqueue(
+                request != null ? request.getImageId() : null,
+                authentication.getName()
+            );
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(error(ex.getMessage()));
+        }
+    }
+
+    @GetMapping("/parse/jobs/{jobId}")
+    public CompletableFuture<ResponseEntity<?>> getParseJob(
+        @PathVariable("jobId") Long jobId,
+        @RequestParam(value = "waitMs", required = false, defaultValue = "0") long waitMs
+    ) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication.getName() == null || "anonymousUser".equals(authentication.getName())) {
+            return CompletableFuture.completedFuture(
+                ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error("Unauthorized"))
+            );
+        }
+
+        try {
+            return receiptParseJobService.awaitJob(jobId, authentication.getName(), waitMs)
+                .<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+                .exceptionally(ex -> {
+                    Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                    if (cause instanceof IllegalArgumentException) {
+                        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error(cause.getMessage()));
+                    }
+                    throw ex instanceof CompletionException ? (CompletionException) ex : new CompletionException(ex);
+                });
+        } catch (IllegalArgumentException ex) {
+            return CompletableFuture.completedFuture(
+                ResponseEntity.status(HttpStatus.NOT_FOUND).body(error(ex.getMessage()))
+            );
+        }
+    }
+
     @PutMapping("/{id}/review")
     public ResponseEntity<?> updateReceiptReviewStatus(
         @PathVariable("id") Long id,
@@ -231,9 +451,26 @@ public class ReceiptController {
         }
     }
 
+    private ResponseEntity<StreamingResponseBody> streamingError(HttpStatus status, String message) {
+        return ResponseEntity.status(status)
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(output -> objectMapper.writeValue(output, error(message)));
+    }
+
+    private Map<String, Object> streamError(HttpStatus status, String message) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("error", message);
+        payload.put("status", status.value());
+        return payload;
+    }
+
     private Map<String, String> error(String message) {
         Map<String, String> payload = new HashMap<>();
         payload.put("error", message);
         return payload;
     }
+
+    private interface SseWriter {
+        void send(String event, Object data);
+    }
 }
@@ -4,6 +4,7 @@ import com.example.aireceiptbackend.model.User;
 import com.example.aireceiptbackend.model.UserProfileResponse;
 import com.example.aireceiptbackend.model.UserUpdateRequest;
 import com.example.aireceiptbackend.repository.UserRepository;
+import com.example.aireceiptbackend.service.UserResolutionService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.core.Authentication;
@@ -23,10 +24,16 @@ public class UserController {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final UserResolutionService userResolutionService;
 
-    public UserController(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserController(
+        UserRepository userRepository,
+        PasswordEncoder passwordEncoder,
+        UserResolutionService userResolutionService
+    ) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.userResolutionService = userResolutionService;
     }
 
     @GetMapping("/me")
@@ -115,6 +122,8 @@ public class UserController {
 
         if (req.getPassword() != null && !req.getPassword().trim().isEmpty()) {
             user.setPassword(passwordEncoder.encode(req.getPassword()));
+            // Revoke every token issued with the old password.
+            user.setTokenVersion((user.getTokenVersion() != null ? user.getTokenVersion() : 0) + 1);
             changed = true;
         }
 
@@ -131,6 +140,7 @@ public class UserController {
         }
 
         User saved = userRepository.save(user);
+        userResolutionService.evict(saved);
         return ResponseEntity.ok(toProfile(saved));
     }
 
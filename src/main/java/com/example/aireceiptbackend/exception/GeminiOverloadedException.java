@@ -0,0 +1,24 @@
+package com.example.aireceiptbackend.exception;
+
+public class GeminiOverloadedException extends RuntimeException {
+    private final long retryAfterSeconds;
+    private final boolean providerThrottled;
+
+    public GeminiOverloadedException(String message, long retryAfterSeconds) {
+        this(message, retryAfterSeconds, false);
+    }
+
+    public GeminiOverloadedException(String message, long retryAfterSeconds, boolean providerThrottled) {
+        super(message);
+        this.retryAfterSeconds = Math.max(1, retryAfterSeconds);
+        this.providerThrottled = providerThrottled;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public boolean isProviderThrottled() {
+        return providerThrottled;
+    }
+}
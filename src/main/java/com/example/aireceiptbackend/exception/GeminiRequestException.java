@@ -0,0 +1,7 @@
+package com.example.aireceiptbackend.exception;
+
+public class GeminiRequestException extends IllegalStateException {
+    public GeminiRequestException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
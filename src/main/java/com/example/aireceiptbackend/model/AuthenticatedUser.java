@@ -0,0 +1,43 @@
+package com.example.aireceiptbackend.model;
+
+import org.springframework.security.core.AuthenticatedPrincipal;
+
+/**
+ * Principal built from a verified JWT. {@link #getName()} is the token subject, so existing
+ * {@code authentication.getName()} callers keep receiving the email.
+ */
+public class AuthenticatedUser implements AuthenticatedPrincipal {
+    private final Long userId;
+    private final String subject;
+    private final String plan;
+    private final String accountType;
+
+    public AuthenticatedUser(Long userId, String subject, String plan, String accountType) {
+        this.userId = userId;
+        this.subject = subject;
+        this.plan = plan;
+        this.accountType = accountType;
+    }
+
+    @Override
+    public String getName() {
+        return subject;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getPlan() {
+        return plan;
+    }
+
+    public String getAccountType() {
+        return accountType;
+    }
+
+    @Override
+    public String toString() {
+        return subject;
+    }
+}
@@ -4,7 +4,10 @@ import javax.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "image_assets")
+@Table(
+    name = "image_assets",
+    indexes = @Index(name = "idx_image_assets_content_sha256", columnList = "content_sha256")
+)
 public class ImageAsset {
 
     @Id
@@ -27,6 +30,12 @@ public class ImageAsset {
     @Column(name = "size_bytes")
     private Long sizeBytes;
 
+    @Column(name = "content_sha256", length = 64)
+    private String contentSha256;
+
+    @Column(name = "processed_object_key", length = 600)
+    private String processedObjectKey;
+
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
 
@@ -83,6 +92,22 @@ public class ImageAsset {
         this.sizeBytes = sizeBytes;
     }
 
+    public String getContentSha256() {
+        return contentSha256;
+    }
+
+    public void setContentSha256(String contentSha256) {
+        this.contentSha256 = contentSha256;
+    }
+
+    public String getProcessedObjectKey() {
+        return processedObjectKey;
+    }
+
+    public void setProcessedObjectKey(String processedObjectKey) {
+        this.processedObjectKey = processedObjectKey;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
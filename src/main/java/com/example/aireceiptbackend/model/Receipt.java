@@ -8,7 +8,10 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "receipts")
+@Table(
+    name = "receipts",
+    indexes = @Index(name = "idx_receipts_user_created_id", columnList = "user_id, created_at, id")
+)
 public class Receipt {
 
     @Id
@@ -54,6 +57,13 @@ public class Receipt {
     @Column(name = "raw_json")
     private String rawJson;
 
+    @Column(name = "extraction_model", length = 64)
+    private String extractionModel;
+
+    // fast, escalated, single, stream or cache: which routing tier produced the extraction.
+    @Column(name = "extraction_tier", length = 16)
+    private String extractionTier;
+
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
@@ -181,6 +191,22 @@ public class Receipt {
         this.rawJson = rawJson;
     }
 
+    public String getExtractionModel() {
+        return extractionModel;
+    }
+
+    public void setExtractionModel(String extractionModel) {
+        this.extractionModel = extractionModel;
+    }
+
+    public String getExtractionTier() {
+        return extractionTier;
+    }
+
+    public void setExtractionTier(String extractionTier) {
+        this.extractionTier = extractionTier;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -0,0 +1,62 @@
+package com.example.aireceiptbackend.model;
+
+public class ReceiptBatchParseItemResponse {
+    public static final String STATUS_EXTRACTED = "EXTRACTED";
+    public static final String STATUS_SAVED = "SAVED";
+    public static final String STATUS_FAILED = "FAILED";
+
+    private int index;
+    private Long imageId;
+    private String status;
+    private String error;
+    private ReceiptParseResponse receipt;
+
+    public ReceiptBatchParseItemResponse() {
+    }
+
+    public ReceiptBatchParseItemResponse(int index, Long imageId, String status) {
+        this.index = index;
+        this.imageId = imageId;
+        this.status = status;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public Long getImageId() {
+        return imageId;
+    }
+
+    public void setImageId(Long imageId) {
+        this.imageId = imageId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public ReceiptParseResponse getReceipt() {
+        return receipt;
+    }
+
+    public void setReceipt(ReceiptParseResponse receipt) {
+        this.receipt = receipt;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.aireceiptbackend.model;
+
+import java.util.List;
+
+public class ReceiptBatchParseRequest {
+    private List<Long> imageIds;
+
+    public ReceiptBatchParseRequest() {
+    }
+
+    public ReceiptBatchParseRequest(List<Long> imageIds) {
+        this.imageIds = imageIds;
+    }
+
+    public List<Long> getImageIds() {
+        return imageIds;
+    }
+
+    public void setImageIds(List<Long> imageIds) {
+        this.imageIds = imageIds;
+    }
+}
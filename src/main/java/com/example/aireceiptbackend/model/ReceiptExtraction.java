@@ -1,5 +1,7 @@
 package com.example.aireceiptbackend.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.util.List;
 
 public class ReceiptExtraction {
@@ -12,6 +14,13 @@ public class ReceiptExtraction {
     private String total;
     private List<ReceiptItemExtraction> items;
 
+    // Set by the extractor, not part of the model output or the cached JSON.
+    @JsonIgnore
+    private String extractionModel;
+
+    @JsonIgnore
+    private String extractionTier;
+
     public String getMerchantName() {
         return merchantName;
     }
@@ -75,4 +84,24 @@ public class ReceiptExtraction {
     public void setItems(List<ReceiptItemExtraction> items) {
         this.items = items;
     }
+
+    @JsonIgnore
+    public String getExtractionModel() {
+        return extractionModel;
+    }
+
+    @JsonIgnore
+    public void setExtractionModel(String extractionModel) {
+        this.extractionModel = extractionModel;
+    }
+
+    @JsonIgnore
+    public String getExtractionTier() {
+        return extractionTier;
+    }
+
+    @JsonIgnore
+    public void setExtractionTier(String extractionTier) {
+        this.extractionTier = extractionTier;
+    }
 }
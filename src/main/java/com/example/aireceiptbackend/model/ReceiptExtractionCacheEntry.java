@@ -0,0 +1,124 @@
+package com.example.aireceiptbackend.model;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(
+    name = "receipt_extraction_cache",
+    uniqueConstraints = @UniqueConstraint(
+        name = "uk_receipt_extraction_cache_digest_model_prompt",
+        columnNames = {"content_sha256", "model", "prompt_version"}
+    )
+)
+public class ReceiptExtractionCacheEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "content_sha256", nullable = false, length = 64)
+    private String contentSha256;
+
+    @Column(name = "model", nullable = false, length = 64)
+    private String model;
+
+    @Column(name = "prompt_version", nullable = false, length = 32)
+    private String promptVersion;
+
+    @Lob
+    @Column(name = "extraction_json", nullable = false)
+    private String extractionJson;
+
+    @Column(name = "extraction_latency_ms")
+    private Long extractionLatencyMs;
+
+    @Column(name = "hit_count", nullable = false)
+    private Long hitCount = 0L;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "last_hit_at")
+    private LocalDateTime lastHitAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        if (hitCount == null) {
+            hitCount = 0L;
+        }
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getContentSha256() {
+        return contentSha256;
+    }
+
+    public void setContentSha256(String contentSha256) {
+        this.contentSha256 = contentSha256;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public void setModel(String model) {
+        this.model = model;
+    }
+
+    public String getPromptVersion() {
+        return promptVersion;
+    }
+
+    public void setPromptVersion(String promptVersion) {
+        this.promptVersion = promptVersion;
+    }
+
+    public String getExtractionJson() {
+        return extractionJson;
+    }
+
+    public void setExtractionJson(String extractionJson) {
+        this.extractionJson = extractionJson;
+    }
+
+    public Long getExtractionLatencyMs() {
+        return extractionLatencyMs;
+    }
+
+    public void setExtractionLatencyMs(Long extractionLatencyMs) {
+        this.extractionLatencyMs = extractionLatencyMs;
+    }
+
+    public Long getHitCount() {
+        return hitCount;
+    }
+
+    public void setHitCount(Long hitCount) {
+        this.hitCount = hitCount;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getLastHitAt() {
+        return lastHitAt;
+    }
+
+    public void setLastHitAt(LocalDateTime lastHitAt) {
+        this.lastHitAt = lastHitAt;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.aireceiptbackend.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * List-view columns of a receipt, selected directly by JPQL so paging never hydrates
+ * Receipt entities, their items or the raw extraction JSON.
+ */
+public class ReceiptListRow {
+    private final Long id;
+    private final String merchantName;
+    private final LocalDate receiptDate;
+    private final String currency;
+    private final String category;
+    private final Long imageAssetId;
+    private final String imageUrl;
+    private final Boolean reviewed;
+    private final BigDecimal subtotalAmount;
+    private final BigDecimal taxAmount;
+    private final BigDecimal totalAmount;
+    private final LocalDateTime createdAt;
+
+    public ReceiptListRow(
+        Long id,
+        String merchantName,
+        LocalDate receiptDate,
+        String currency,
+        String category,
+        Long imageAssetId,
+        String imageUrl,
+        Boolean reviewed,
+        BigDecimal subtotalAmount,
+        BigDecimal taxAmount,
+        BigDecimal totalAmount,
+        LocalDateTime createdAt
+    ) {
+        this.id = id;
+        this.merchantName = merchantName;
+        this.receiptDate = receiptDate;
+        this.currency = currency;
+        this.category = category;
+        this.imageAssetId = imageAssetId;
+        this.imageUrl = imageUrl;
+        this.reviewed = reviewed;
+        this.subtotalAmount = subtotalAmount;
+        this.taxAmount = taxAmount;
+        this.totalAmount = totalAmount;
+        this.createdAt = createdAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getMerchantName() {
+        return merchantName;
+    }
+
+    public LocalDate getReceiptDate() {
+        return receiptDate;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public Long getImageAssetId() {
+        return imageAssetId;
+    }
+
+    public String getImageUrl() {
+        return imageUrl;
+    }
+
+    public Boolean getReviewed() {
+        return reviewed;
+    }
+
+    public BigDecimal getSubtotalAmount() {
+        return subtotalAmount;
+    }
+
+    public BigDecimal getTaxAmount() {
+        return taxAmount;
+    }
+
+    public BigDecimal getTotalAmount() {
+        return totalAmount;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.aireceiptbackend.model;
+
+import java.util.List;
+
+public class ReceiptPageResponse {
+    private List<ReceiptParseResponse> receipts;
+    private String nextCursor;
+    private boolean hasMore;
+
+    public ReceiptPageResponse() {
+    }
+
+    public ReceiptPageResponse(List<ReceiptParseResponse> receipts, String nextCursor, boolean hasMore) {
+        this.receipts = receipts;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+    }
+
+    public List<ReceiptParseResponse> getReceipts() {
+        return receipts;
+    }
+
+    public void setReceipts(List<ReceiptParseResponse> receipts) {
+        this.receipts = receipts;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+}
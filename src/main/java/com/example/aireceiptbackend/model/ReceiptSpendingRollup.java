@@ -0,0 +1,117 @@
+package com.example.aireceiptbackend.model;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Per-user monthly spending totals, keyed by the receipt date's month. Maintained incrementally
+ * by {@code ReceiptSpendingRollupService} and rebuilt from receipts periodically.
+ */
+@Entity
+@Table(
+    name = "receipt_spending_rollup",
+    uniqueConstraints = @UniqueConstraint(
+        name = "uk_receipt_spending_rollup_key",
+        columnNames = {"user_id", "month_start", "category", "currency"}
+    )
+)
+public class ReceiptSpendingRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Column(name = "month_start", nullable = false)
+    private LocalDate monthStart;
+
+    @Column(name = "category", nullable = false, length = 64)
+    private String category;
+
+    @Column(name = "currency", nullable = false, length = 8)
+    private String currency;
+
+    @Column(name = "total_amount", nullable = false, precision = 14, scale = 2)
+    private BigDecimal totalAmount = BigDecimal.ZERO;
+
+    @Column(name = "receipt_count", nullable = false)
+    private Integer receiptCount = 0;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onWrite() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public void setUser(User user) {
+        this.user = user;
+    }
+
+    public LocalDate getMonthStart() {
+        return monthStart;
+    }
+
+    public void setMonthStart(LocalDate monthStart) {
+        this.monthStart = monthStart;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(String category) {
+        this.category = category;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+
+    public BigDecimal getTotalAmount() {
+        return totalAmount;
+    }
+
+    public void setTotalAmount(BigDecimal totalAmount) {
+        this.totalAmount = totalAmount;
+    }
+
+    public Integer getReceiptCount() {
+        return receiptCount;
+    }
+
+    public void setReceiptCount(Integer receiptCount) {
+        this.receiptCount = receiptCount;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -62,6 +62,10 @@ public class User {
     @Column(name = "subscription_cancel_at_period_end", nullable = false)
     private Boolean subscriptionCancelAtPeriodEnd = false;
 
+    // Embedded in issued JWTs; bumping it revokes every token issued before.
+    @Column(name = "token_version", nullable = false)
+    private Integer tokenVersion = 0;
+
     public User() {}
 
     public User(String username, String email, String password) {
@@ -85,6 +89,9 @@ public class User {
         if (plan == null || plan.trim().isEmpty()) {
             plan = "FREE";
         }
+        if (tokenVersion == null) {
+            tokenVersion = 0;
+        }
     }
 
     @PreUpdate
@@ -236,4 +243,12 @@ public class User {
     public void setSubscriptionCancelAtPeriodEnd(Boolean subscriptionCancelAtPeriodEnd) {
         this.subscriptionCancelAtPeriodEnd = subscriptionCancelAtPeriodEnd;
     }
+
+    public Integer getTokenVersion() {
+        return tokenVersion;
+    }
+
+    public void setTokenVersion(Integer tokenVersion) {
+        this.tokenVersion = tokenVersion;
+    }
 }
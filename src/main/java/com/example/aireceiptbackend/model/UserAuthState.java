@@ -0,0 +1,34 @@
+package com.example.aireceiptbackend.model;
+
+/**
+ * The few user columns the JWT filter needs to validate a token and build the principal.
+ */
+public class UserAuthState {
+    private final Long userId;
+    private final int tokenVersion;
+    private final String plan;
+    private final String accountType;
+
+    public UserAuthState(Long userId, Integer tokenVersion, String plan, String accountType) {
+        this.userId = userId;
+        this.tokenVersion = tokenVersion != null ? tokenVersion : 0;
+        this.plan = plan;
+        this.accountType = accountType;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public int getTokenVersion() {
+        return tokenVersion;
+    }
+
+    public String getPlan() {
+        return plan;
+    }
+
+    public String getAccountType() {
+        return accountType;
+    }
+}
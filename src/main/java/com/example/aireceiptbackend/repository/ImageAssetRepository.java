@@ -3,9 +3,27 @@ package com.example.aireceiptbackend.repository;
 import com.example.aireceiptbackend.model.ImageAsset;
 import com.example.aireceiptbackend.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface ImageAssetRepository extends JpaRepository<ImageAsset, Long> {
     Optional<ImageAsset> findByIdAndUser(Long id, User user);
+
+    List<ImageAsset> findByUserAndIdIn(User user, Collection<Long> ids);
+
+    @Transactional
+    @Modifying
+    @Query("update ImageAsset a set a.contentSha256 = :contentSha256 where a.id = :id")
+    int updateContentSha256(@Param("id") Long id, @Param("contentSha256") String contentSha256);
+
+    @Transactional
+    @Modifying
+    @Query("update ImageAsset a set a.processedObjectKey = :processedObjectKey where a.id = :id")
+    int updateProcessedObjectKey(@Param("id") Long id, @Param("processedObjectKey") String processedObjectKey);
 }
@@ -14,6 +14,8 @@ public interface ReceiptDailyUsageRepository extends JpaRepository<ReceiptDailyU
 
     Optional<ReceiptDailyUsage> findByUserAndUsageDate(User user, LocalDate usageDate);
 
+    boolean existsByUserAndUsageDate(User user, LocalDate usageDate);
+
     @Modifying
     @Query(
         value = "insert into receipt_daily_usage " +
@@ -55,4 +57,51 @@ public interface ReceiptDailyUsageRepository extends JpaRepository<ReceiptDailyU
             "and u.usedCount > 0"
     )
     int releaseOne(@Param("user") User user, @Param("usageDate") LocalDate usageDate);
+
+    @Modifying
+    @Query(
+        "update ReceiptDailyUsage u " +
+            "set u.usedCount = u.usedCount + :count, " +
+            "u.limitCount = :limitCount, " +
+            "u.updatedAt = current_timestamp " +
+            "where u.user = :user " +
+            "and u.usageDate = :usageDate " +
+            "and u.usedCount + :count <= :limitCount"
+    )
+    int reserveMany(
+        @Param("user") User user,
+        @Param("usageDate") LocalDate usageDate,
+        @Param("count") int count,
+        @Param("limitCount") int limitCount
+    );
+
+    @Modifying
+    @Query(
+        value = "update receipt_daily_usage " +
+            "set used_count = greatest(used_count - :count, 0), updated_at = current_timestamp " +
+            "where user_id = :userId and usage_date = :usageDate and used_count > 0",
+        nativeQuery = true
+    )
+    int releaseMany(
+        @Param("userId") Long userId,
+        @Param("usageDate") LocalDate usageDate,
+        @Param("count") int count
+    );
+
+    @Modifying
+    @Query(
+        value = "insert into receipt_daily_usage " +
+            "(user_id, usage_date, used_count, limit_count, created_at, updated_at) " +
+            "values (:userId, :usageDate, greatest(:insertUsedCount, 0), :limitCount, current_timestamp, current_timestamp) " +
+            "on duplicate key update used_count = greatest(used_count + :delta, 0), " +
+            "limit_count = values(limit_count), updated_at = current_timestamp",
+        nativeQuery = true
+    )
+    int applyUsageDelta(
+        @Param("userId") Long userId,
+        @Param("usageDate") LocalDate usageDate,
+        @Param("insertUsedCount") int insertUsedCount,
+        @Param("delta") int delta,
+        @Param("limitCount") int limitCount
+    );
 }
@@ -0,0 +1,30 @@
+package com.example.aireceiptbackend.repository;
+
+import com.example.aireceiptbackend.model.ReceiptExtractionCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface ReceiptExtractionCacheRepository extends JpaRepository<ReceiptExtractionCacheEntry, Long> {
+
+    Optional<ReceiptExtractionCacheEntry> findByContentSha256AndModelAndPromptVersion(
+        String contentSha256,
+        String model,
+        String promptVersion
+    );
+
+    @Transactional
+    @Modifying
+    @Query(
+        "update ReceiptExtractionCacheEntry e " +
+            "set e.hitCount = e.hitCount + 1, " +
+            "e.lastHitAt = :now " +
+            "where e.id = :id"
+    )
+    int recordHit(@Param("id") Long id, @Param("now") LocalDateTime now);
+}
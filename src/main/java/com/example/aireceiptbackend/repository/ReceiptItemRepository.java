@@ -0,0 +1,15 @@
+package com.example.aireceiptbackend.repository;
+
+import com.example.aireceiptbackend.model.ReceiptItem;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ReceiptItemRepository extends JpaRepository<ReceiptItem, Long> {
+
+    @Query("select i from ReceiptItem i where i.receipt.id in :receiptIds order by i.receipt.id, i.id")
+    List<ReceiptItem> findByReceiptIds(@Param("receiptIds") Collection<Long> receiptIds);
+}
@@ -0,0 +1,88 @@
+package com.example.aireceiptbackend.repository;
+
+import com.example.aireceiptbackend.model.ReceiptParseJob;
+import com.example.aireceiptbackend.model.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface ReceiptParseJobRepository extends JpaRepository<ReceiptParseJob, Long> {
+
+    Optional<ReceiptParseJob> findByIdAndUser(Long id, User user);
+
+    @Query("select j from ReceiptParseJob j join fetch j.user where j.id = :id")
+    Optional<ReceiptParseJob> findWithUserById(@Param("id") Long id);
+
+    @Query("select j.id from ReceiptParseJob j where j.status = :status order by j.createdAt asc, j.id asc")
+    List<Long> findIdsByStatus(@Param("status") String status, Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query(
+        "update ReceiptParseJob j " +
+            "set j.status = 'RUNNING', " +
+            "j.startedAt = :now, " +
+            "j.attempts = j.attempts + 1 " +
+            "where j.id = :id " +
+            "and j.status = 'PENDING'"
+    )
+    int claim(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query(
+        "update ReceiptParseJob j " +
+            "set j.status = 'SUCCEEDED', " +
+            "j.receiptId = :receiptId, " +
+            "j.errorCode = null, " +
+            "j.errorMessage = null, " +
+            "j.finishedAt = :now " +
+            "where j.id = :id " +
+            "and j.status = 'RUNNING' " +
+            "and j.attempts = :attempt"
+    )
+    int markSucceeded(
+        @Param("id") Long id,
+        @Param("attempt") Integer attempt,
+        @Param("receiptId") Long receiptId,
+        @Param("now") LocalDateTime now
+    );
+
+    @Transactional
+    @Modifying
+    @Query(
+        "update ReceiptParseJob j " +
+            "set j.status = 'FAILED', " +
+            "j.errorCode = :errorCode, " +
+            "j.errorMessage = :errorMessage, " +
+            "j.finishedAt = :now " +
+            "where j.id = :id " +
+            "and j.status = 'RUNNING' " +
+            "and j.attempts = :attempt"
+    )
+    int markFailed(
+        @Param("id") Long id,
+        @Param("attempt") Integer attempt,
+        @Param("errorCode") String errorCode,
+        @Param("errorMessage") String errorMessage,
+        @Param("now") LocalDateTime now
+    );
+
+    @Transactional
+    @Modifying
+    @Query(
+        "update ReceiptParseJob j " +
+            "set j.status = 'PENDING', " +
+            "j.startedAt = null " +
+            "where j.status = 'RUNNING' " +
+            "and j.startedAt < :cutoff"
+    )
+    int requeueExpiredJobs(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -2,11 +2,16 @@ package com.example.aireceiptbackend.repository;
 
 import com.example.aireceiptbackend.model.Receipt;
 import com.example.aireceiptbackend.model.ImageAsset;
+import com.example.aireceiptbackend.model.ReceiptListRow;
 import com.example.aireceiptbackend.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
+
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.Collection;
@@ -14,10 +19,17 @@ import java.util.List;
 import java.util.Optional;
 
 public interface ReceiptRepository extends JpaRepository<Receipt, Long> {
+    // Keeps "distinct" in memory only: it dedupes the fetch-joined roots without a SQL DISTINCT.
+    String PASS_DISTINCT_THROUGH = "hibernate.query.passDistinctThrough";
+
     List<Receipt> findByUser(User user);
     Optional<Receipt> findByIdAndUser(Long id, User user);
     List<Receipt> findByIdInAndUser(Collection<Long> ids, User user);
     boolean existsByImageAsset(ImageAsset imageAsset);
+    Optional<Receipt> findFirstByImageAssetIdAndCreatedAtGreaterThanEqualOrderByIdAsc(
+        Long imageAssetId,
+        LocalDateTime createdAt
+    );
     List<Receipt> findByUserEmailOrderByCreatedAtDesc(String email);
     List<Receipt> findByUserUsernameOrderByCreatedAtDesc(String username);
     List<Receipt> findByUserAndCreatedAtGreaterThanEqualAndCreatedAtLessThanOrderByCreatedAtDesc(
@@ -47,4 +59,65 @@ public interface ReceiptRepository extends JpaRepository<Receipt, Long> {
         @Param("start") java.time.LocalDate start,
         @Param("end") java.time.LocalDate end
     );
+
+    @Query(
+        "select new com.example.aireceiptbackend.model.ReceiptListRow(" +
+            "r.id, r.merchantName, r.receiptDate, r.currency, r.category, r.imageAsset.id, r.imageUrl, " +
+            "r.isReviewed, r.subtotalAmount, r.taxAmount, r.totalAmount, r.createdAt) " +
+            "from Receipt r " +
+            "where r.user = :user " +
+            "order by r.createdAt desc, r.id desc"
+    )
+    List<ReceiptListRow> findListRowsByUser(@Param("user") User user, Pageable pageable);
+
+    @Query(
+        "select new com.example.aireceiptbackend.model.ReceiptListRow(" +
+            "r.id, r.merchantName, r.receiptDate, r.currency, r.category, r.imageAsset.id, r.imageUrl, " +
+            "r.isReviewed, r.subtotalAmount, r.taxAmount, r.totalAmount, r.createdAt) " +
+            "from Receipt r " +
+            "where r.user = :user " +
+            "and (r.createdAt < :createdAt or (r.createdAt = :createdAt and r.id < :id)) " +
+            "order by r.createdAt desc, r.id desc"
+    )
+    List<ReceiptListRow> findListRowsByUserBefore(
+        @Param("user") User user,
+        @Param("createdAt") LocalDateTime createdAt,
+        @Param("id") Long id,
+        Pageable pageable
+    );
+
+    @Query(
+        "select distinct r from Receipt r " +
+            "left join fetch r.items " +
+            "left join fetch r.imageAsset " +
+            "where r.user = :user " +
+            "order by r.createdAt desc, r.id desc"
+    )
+    @QueryHints(@QueryHint(name = PASS_DISTINCT_THROUGH, value = "false"))
+    List<Receipt> findWithDetailsByUser(@Param("user") User user);
+
+    @Query(
+        "select distinct r from Receipt r " +
+            "left join fetch r.items " +
+            "left join fetch r.imageAsset " +
+            "where r.user = :user " +
+            "and r.receiptDate >= :start " +
+            "and r.receiptDate <= :end " +
+            "order by r.receiptDate desc"
+    )
+    @QueryHints(@QueryHint(name = PASS_DISTINCT_THROUGH, value = "false"))
+    List<Receipt> findWithDetailsByUserAndReceiptDateBetween(
+        @Param("user") User user,
+        @Param("start") java.time.LocalDate start,
+        @Param("end") java.time.LocalDate end
+    );
+
+    @Query(
+        "select r from Receipt r " +
+            "left join fetch r.items " +
+            "left join fetch r.imageAsset " +
+            "where r.id = :id " +
+            "and r.user = :user"
+    )
+    Optional<Receipt> findWithDetailsByIdAndUser(@Param("id") Long id, @Param("user") User user);
 }
@@ -0,0 +1,79 @@
+package com.example.aireceiptbackend.repository;
+
+import com.example.aireceiptbackend.model.ReceiptSpendingRollup;
+import com.example.aireceiptbackend.model.User;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+public interface ReceiptSpendingRollupRepository extends JpaRepository<ReceiptSpendingRollup, Long> {
+
+    @Query(
+        "select r from ReceiptSpendingRollup r " +
+            "where r.user = :user " +
+            "and r.monthStart = :monthStart " +
+            "and r.receiptCount > 0"
+    )
+    List<ReceiptSpendingRollup> findActiveByUserAndMonthStart(
+        @Param("user") User user,
+        @Param("monthStart") LocalDate monthStart
+    );
+
+    @Modifying
+    @Query(
+        value = "insert into receipt_spending_rollup " +
+            "(user_id, month_start, category, currency, total_amount, receipt_count, updated_at) " +
+            "values (:userId, :monthStart, :category, :currency, :amount, :count, current_timestamp) " +
+            "on duplicate key update " +
+            "total_amount = total_amount + values(total_amount), " +
+            "receipt_count = receipt_count + values(receipt_count), " +
+            "updated_at = current_timestamp",
+        nativeQuery = true
+    )
+    int applyDelta(
+        @Param("userId") Long userId,
+        @Param("monthStart") LocalDate monthStart,
+        @Param("category") String category,
+        @Param("currency") String currency,
+        @Param("amount") BigDecimal amount,
+        @Param("count") int count
+    );
+
+    @Query(
+        value = "select user_id from receipts where receipt_date is not null " +
+            "union select user_id from receipt_spending_rollup",
+        nativeQuery = true
+    )
+    List<Long> findUserIdsToRebuild();
+
+    @Modifying
+    @Query(value = "delete from receipt_spending_rollup where user_id = :userId", nativeQuery = true)
+    int deleteByUserId(@Param("userId") Long userId);
+
+    // Category/currency fallbacks must match ReceiptSpendingRollupService.snapshot.
+    @Modifying
+    @Query(
+        value = "insert into receipt_spending_rollup " +
+            "(user_id, month_start, category, currency, total_amount, receipt_count, updated_at) " +
+            "select user_id, " +
+            "date_sub(receipt_date, interval dayofmonth(receipt_date) - 1 day), " +
+            "coalesce(nullif(trim(category), ''), 'Other'), " +
+            "coalesce(nullif(trim(currency), ''), 'USD'), " +
+            "coalesce(sum(total_amount), 0), " +
+            "count(*), " +
+            "current_timestamp " +
+            "from receipts " +
+            "where user_id = :userId and receipt_date is not null " +
+            "group by user_id, " +
+            "date_sub(receipt_date, interval dayofmonth(receipt_date) - 1 day), " +
+            "coalesce(nullif(trim(category), ''), 'Other'), " +
+            "coalesce(nullif(trim(currency), ''), 'USD')",
+        nativeQuery = true
+    )
+    int rebuildForUser(@Param("userId") Long userId);
+}
@@ -1,7 +1,10 @@
 package com.example.aireceiptbackend.repository;
 
 import com.example.aireceiptbackend.model.User;
+import com.example.aireceiptbackend.model.UserAuthState;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -15,4 +18,10 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmailVerificationToken(String token);
     Boolean existsByUsername(String username);
     Boolean existsByEmail(String email);
+
+    @Query(
+        "select new com.example.aireceiptbackend.model.UserAuthState(u.id, u.tokenVersion, u.plan, u.accountType) " +
+            "from User u where u.id = :id"
+    )
+    Optional<UserAuthState> findAuthStateById(@Param("id") Long id);
 }
@@ -72,7 +72,7 @@ public class AuthService {
         if (!passwordEncoder.matches(password, user.getPassword())) {
             return null;
         }
-        return JwtUtil.generateToken(user.getEmail());
+        return JwtUtil.generateToken(user);
     }
 
     @Transactional
@@ -171,7 +171,7 @@ public class AuthService {
             userRepository.save(user);
         }
 
-        return JwtUtil.generateToken(user.getEmail());
+        return JwtUtil.generateToken(user);
     }
 
     private GoogleIdToken verifyGoogleIdToken(String idToken) {
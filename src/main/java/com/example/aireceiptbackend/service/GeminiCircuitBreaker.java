@@ -0,0 +1,246 @@
+package com.example.aireceiptbackend.service;
+
+import com.example.aireceiptbackend.exception.GeminiOverloadedException;
+import com.example.aireceiptbackend.util.AbortableHttpCall;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker around the Gemini HTTP call itself (not the S3 download, preprocessing or parsing).
+ * Tracks the last window-size calls; when the failure rate or the slow-call rate crosses its threshold
+ * the circuit opens and scans fail fast (before a daily slot is reserved) until open-duration passes.
+ * Then a few probe calls are let through: if they all succeed quickly the circuit closes, otherwise it
+ * opens again. Only transport errors, timeouts, provider 5xx and provider 429 count as failures.
+ */
+@Service
+public class GeminiCircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(GeminiCircuitBreaker.class);
+
+    public enum State {
+        CLOSED,
+        HALF_OPEN,
+        OPEN
+    }
+
+    private final boolean enabled;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int probeCount;
+    private final boolean[] failedCalls;
+    private final boolean[] slowCalls;
+    private final MeterRegistry meterRegistry;
+    private final Counter rejections;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int next;
+    private int recorded;
+    private int failedCount;
+    private int slowCount;
+    private int probesInFlight;
+    private int probeSuccesses;
+
+    public GeminiCircuitBreaker(
+        MeterRegistry meterRegistry,
+        @Value("${gemini.circuit-breaker.enabled:true}") boolean enabled,
+        @Value("${gemini.circuit-breaker.window-size:20}") int windowSize,
+        @Value("${gemini.circuit-breaker.minimum-calls:10}") int minimumCalls,
+        @Value("${gemini.circuit-breaker.failure-rate-threshold:0.5}") double failureRateThreshold,
+        @Value("${gemini.circuit-breaker.slow-call-rate-threshold:0.8}") double slowCallRateThreshold,
+        @Value("${gemini.circuit-breaker.slow-call-ms:15000}") long slowCallMs,
+        @Value("${gemini.circuit-breaker.open-duration-ms:30000}") long openDurationMs,
+        @Value("${gemini.circuit-breaker.probe-count:3}") int probeCount
+    ) {
+        int window = Math.max(1, windowSize);
+        this.enabled = enabled;
+        this.minimumCalls = Math.min(window, Math.max(1, minimumCalls));
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, slowCallMs));
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, openDurationMs));
+        this.probeCount = Math.max(1, probeCount);
+        this.failedCalls = new boolean[window];
+        this.slowCalls = new boolean[window];
+        this.meterRegistry = meterRegistry;
+        this.rejections = Counter.builder("gemini.circuit.rejections")
+            .description("Gemini calls rejected without being sent because the circuit was open")
+            .register(meterRegistry);
+        Gauge.builder("gemini.circuit.state", this, breaker -> breaker.getState().ordinal())
+            .description("Gemini circuit state: 0 closed, 1 half-open, 2 open")
+            .register(meterRegistry);
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Fails fast when an extraction would be rejected anyway, without taking a probe permit.
+     */
+    public synchronized void checkAvailable() {
+        if (!enabled) {
+            return;
+        }
+        if (state == State.OPEN && System.nanoTime() - openedAt < openNanos) {
+            throw rejected();
+        }
+        if (state == State.HALF_OPEN && probesInFlight >= probeCount) {
+            throw rejected();
+        }
+    }
+
+    public <T> T execute(GeminiGateway.GatewayCall<T> call) throws IOException {
+        if (!enabled) {
+            return call.execute();
+        }
+
+        boolean probe = acquirePermission();
+        long startedAt = System.nanoTime();
+        boolean outcomeRecorded = false;
+        try {
+            T result = call.execute();
+            record(probe, false, System.nanoTime() - startedAt);
+            outcomeRecorded = true;
+            return result;
+        } catch (RuntimeException ex) {
+            if (!AbortableHttpCall.isCurrentAborted() && isProviderFailure(ex)) {
+                record(probe, true, System.nanoTime() - startedAt);
+                outcomeRecorded = true;
+            }
+            throw ex;
+        } finally {
+            if (!outcomeRecorded) {
+                releaseProbe(probe);
+            }
+        }
+    }
+
+    // Rejected requests (bad image, bad key), aborted hedges and local capacity rejections say nothing about provider health.
+    private boolean isProviderFailure(RuntimeException ex) {
+        if (ex instanceof ResourceAccessException || ex instanceof HttpServerErrorException) {
+            return true;
+        }
+        if (ex instanceof HttpStatusCodeException) {
+            return ((HttpStatusCodeException) ex).getRawStatusCode() == HttpStatus.TOO_MANY_REQUESTS.value();
+        }
+        return ex instanceof GeminiOverloadedException && ((GeminiOverloadedException) ex).isProviderThrottled();
+    }
+
+    private synchronized boolean acquirePermission() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) {
+                throw rejected();
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesInFlight >= probeCount) {
+                throw rejected();
+            }
+            probesInFlight++;
+            return true;
+        }
+        return false;
+    }
+
+    private synchronized void releaseProbe(boolean probe) {
+        if (probe && state == State.HALF_OPEN) {
+            probesInFlight--;
+        }
+    }
+
+    private synchronized void record(boolean probe, boolean failed, long elapsedNanos) {
+        boolean slow = elapsedNanos > slowCallNanos;
+        if (probe) {
+            if (state != State.HALF_OPEN) {
+                return;
+            }
+            probesInFlight--;
+            if (failed || slow) {
+                transitionTo(State.OPEN);
+            } else if (++probeSuccesses >= probeCount) {
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+        if (state != State.CLOSED) {
+            return;
+        }
+
+        if (recorded == failedCalls.length) {
+            failedCount -= failedCalls[next] ? 1 : 0;
+            slowCount -= slowCalls[next] ? 1 : 0;
+        } else {
+            recorded++;
+        }
+        failedCalls[next] = failed;
+        slowCalls[next] = slow;
+        failedCount += failed ? 1 : 0;
+        slowCount += slow ? 1 : 0;
+        next = (next + 1) % failedCalls.length;
+
+        if (recorded >= minimumCalls
+            && ((double) failedCount / recorded >= failureRateThreshold
+            || (double) slowCount / recorded >= slowCallRateThreshold)) {
+            log.warn(
+                "Opening Gemini circuit: {} failed and {} slow of the last {} calls",
+                failedCount,
+                slowCount,
+                recorded
+            );
+            transitionTo(State.OPEN);
+        }
+    }
+
+    private void transitionTo(State target) {
+        if (state == target) {
+            return;
+        }
+        log.info("Gemini circuit {} -> {}", state, target);
+        Counter.builder("gemini.circuit.transitions")
+            .tag("from", state.name().toLowerCase(Locale.ROOT))
+            .tag("to", target.name().toLowerCase(Locale.ROOT))
+            .description("Gemini circuit breaker state changes")
+            .register(meterRegistry)
+            .increment();
+
+        state = target;
+        if (target == State.OPEN) {
+            openedAt = System.nanoTime();
+        }
+        probesInFlight = 0;
+        probeSuccesses = 0;
+        if (target == State.CLOSED) {
+            next = 0;
+            recorded = 0;
+            failedCount = 0;
+            slowCount = 0;
+        }
+    }
+
+    private GeminiOverloadedException rejected() {
+        rejections.increment();
+        long remainingNanos = state == State.OPEN ? openNanos - (System.nanoTime() - openedAt) : 0;
+        return new GeminiOverloadedException(
+            "Receipt extraction is temporarily unavailable, please retry shortly",
+            TimeUnit.NANOSECONDS.toSeconds(remainingNanos) + 1
+        );
+    }
+}
@@ -0,0 +1,867 @@
+package com.example.aireceiptbackend.service;
+
+import com.example.aireceiptbackend.exception.GeminiOverloadedException;
+import com.example.aireceiptbackend.exception.GeminiRequestException;
+import com.example.aireceiptbackend.model.ReceiptExtraction;
+import com.example.aireceiptbackend.model.ReceiptItemExtraction;
+import com.example.aireceiptbackend.util.AbortableHttpCall;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.ResponseExtractor;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+@Service
+@ConditionalOnProperty(name = "app.receipt.extractor.provider", havingValue = "gemini", matchIfMissing = true)
+public class GeminiClient implements ReceiptExtractor {
+
+    public static final String PROMPT_VERSION = "v1";
+
+    private static final String GENERATE_CONTENT = "generateContent";
+    private static final String STREAM_GENERATE_CONTENT = "streamGenerateContent?alt=sse";
+    private static final ResponseExtractor<byte[]> READ_BODY = response -> StreamUtils.copyToByteArray(response.getBody());
+    private static final Consumer<PartialExtractionListener> END_OF_STREAM = listener -> { };
+
+    private static final String TIER_SINGLE = "single";
+    private static final String TIER_FAST = "fast";
+    private static final String TIER_ESCALATED = "escalated";
+    private static final String TIER_STREAM = "stream";
+
+    private static final String MIME_TYPE_PLACEHOLDER = "__MIME_TYPE__";
+    private static final String DATA_PLACEHOLDER = "__IMAGE_DATA__";
+
+    private static final String PROMPT = "Extract receipt data and return JSON only. " +
+        "Use ISO-8601 date (YYYY-MM-DD). Include items with description, quantity, unitPrice, totalPrice, category(Housing, Utilities, Food, Transportation, Shopping, Health, Entertainment, Subscriptions, Travel, Education).";
+
+    private final RestTemplate restTemplate;
+    private final GeminiGateway geminiGateway;
+    private final GeminiCircuitBreaker circuitBreaker;
+    private final ExecutorService hedgeExecutor;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final String apiKey;
+    private final String apiBase;
+    private final String model;
+    private final String fastModel;
+    private final ReceiptExtractionValidator extractionValidator;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final boolean hedgingEnabled;
+    private final long hedgeMinDelayMs;
+    private final RequestTemplate requestTemplate;
+    private final LatencyWindow recentLatencies = new LatencyWindow();
+    private final Counter hedgesFired;
+    private final Counter hedgeWins;
+
+    public GeminiClient(
+        @Qualifier("geminiRestTemplate") RestTemplate restTemplate,
+        GeminiGateway geminiGateway,
+        GeminiCircuitBreaker circuitBreaker,
+        ReceiptExtractionValidator extractionValidator,
+        @Qualifier("geminiHedgeExecutor") ExecutorService hedgeExecutor,
+        ObjectMapper objectMapper,
+        MeterRegistry meterRegistry,
+        @Value("${gemini.api-key:}") String apiKey,
+        @Value("${gemini.api-base:https://generativelanguage.googleapis.com}") String apiBase,
+        @Value("${gemini.model:gemini-2.5-flash}") String model,
+        @Value("${gemini.routing.fast-model:}") String fastModel,
+        @Value("${gemini.retry.max-attempts:3}") int maxAttempts,
+        @Value("${gemini.retry.initial-backoff-ms:200}") long initialBackoffMs,
+        @Value("${gemini.retry.max-backoff-ms:2000}") long maxBackoffMs,
+        @Value("${gemini.hedge.enabled:false}") boolean hedgingEnabled,
+        @Value("${gemini.hedge.min-delay-ms:3000}") long hedgeMinDelayMs
+    ) {
+        this.restTemplate = restTemplate;
+        this.geminiGateway = geminiGateway;
+        this.circuitBreaker = circuitBreaker;
+        this.hedgeExecutor = hedgeExecutor;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.apiKey = apiKey;
+        this.apiBase = apiBase;
+        this.model = model;
+        this.fastModel = fastModel == null || fastModel.trim().isEmpty() || fastModel.trim().equals(model)
+            ? null
+            : fastModel.trim();
+        this.extractionValidator = extractionValidator;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMs = Math.max(1, initialBackoffMs);
+        this.maxBackoffMs = Math.max(this.initialBackoffMs, maxBackoffMs);
+        this.hedgingEnabled = hedgingEnabled;
+        this.hedgeMinDelayMs = Math.max(0, hedgeMinDelayMs);
+        this.requestTemplate = buildRequestTemplate();
+        this.hedgesFired = Counter.builder("gemini.request.hedges")
+            .tag("result", "fired")
+            .description("Hedged Gemini requests sent after the primary exceeded the p95 delay")
+            .register(meterRegistry);
+        this.hedgeWins = Counter.builder("gemini.request.hedges")
+            .tag("result", "won")
+            .description("Hedged Gemini requests that answered before the primary")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public boolean isConfigured() {
+        return apiKey != null && !apiKey.trim().isEmpty();
+    }
+
+    /**
+     * With tiered routing the id names both tiers, so cached extractions are keyed by the routing policy.
+     */
+    @Override
+    public String getModel() {
+        return fastModel != null ? fastModel + ">" + model : model;
+    }
+
+    @Override
+    public String getPromptVersion() {
+        return PROMPT_VERSION;
+    }
+
+    /**
+     * With {@code gemini.routing.fast-model} set, the scan goes to the fast model first and is only
+     * escalated to {@code gemini.model} when the result fails {@link ReceiptExtractionValidator} or
+     * is not valid JSON; the serving model and tier are recorded on the extraction. Request failures
+     * ({@link GeminiRequestException}, {@link GeminiOverloadedException}) are not escalated.
+     */
+    @Override
+    public ReceiptExtraction extractReceipt(String mimeType, ImageSource image) throws IOException {
+        if (!isConfigured()) {
+            throw new IllegalStateException("Gemini API key is not configured");
+        }
+
+        long startedAt = System.nanoTime();
+        if (fastModel == null) {
+            return served(extractWith(model, mimeType, image), model, TIER_SINGLE, startedAt);
+        }
+
+        String reason;
+        try {
+            ReceiptExtraction fast = extractWith(fastModel, mimeType, image);
+            Optional<String> issue = extractionValidator.validate(fast);
+            if (issue.isEmpty()) {
+                return served(fast, fastModel, TIER_FAST, startedAt);
+            }
+            reason = issue.get();
+        } catch (JsonProcessingException ex) {
+            reason = "unparseable";
+        }
+        Counter.builder("receipt.extraction.escalations")
+            .tag("reason", reason)
+            .description("Fast-tier extractions escalated to the stronger model")
+            .register(meterRegistry)
+            .increment();
+        return served(extractWith(model, mimeType, image), model, TIER_ESCALATED, startedAt);
+    }
+
+    /**
+     * Streams the extraction through streamGenerateContent (SSE). Each text chunk is fed to a
+     * non-blocking JSON parser so top-level fields and completed items reach the listener while the
+     * model is still generating; the full text is parsed once more at the end for the final result.
+     * Tiered routing does not apply: escalating would retract fields the client has already shown, so
+     * the stream is always served by gemini.model (tier "stream"), and it is not retried or hedged.
+     * The HTTP exchange runs on the Gemini request executor and hands events to the calling thread,
+     * so writes to the client are neither timed as Gemini latency nor done while a gateway permit is held.
+     */
+    @Override
+    public ReceiptExtraction extractReceiptStreaming(
+        String mimeType,
+        ImageSource image,
+        PartialExtractionListener listener
+    ) throws IOException {
+        if (!isConfigured()) {
+            throw new IllegalStateException("Gemini API key is not configured");
+        }
+
+        long startedAt = System.nanoTime();
+        String text;
+        try {
+            text = relayStream(mimeType, image, listener);
+        } catch (RestClientException ex) {
+            throw new GeminiRequestException("Gemini API request failed", ex);
+        }
+        if (text == null || text.trim().isEmpty()) {
+            throw new IllegalStateException("No text response from Gemini");
+        }
+        char[] chars = text.toCharArray();
+        return served(readExtraction(chars, 0, chars.length), model, TIER_STREAM, startedAt);
+    }
+
+    private String relayStream(String mimeType, ImageSource image, PartialExtractionListener listener) throws IOException {
+        BlockingQueue<Consumer<PartialExtractionListener>> events = new LinkedBlockingQueue<>();
+        PartialExtractionListener queued = new PartialExtractionListener() {
+            @Override
+            public void onField(String name, String value) {
+                events.add(target -> target.onField(name, value));
+            }
+
+            @Override
+            public void onItem(int index, ReceiptItemExtraction item) {
+                events.add(target -> target.onItem(index, item));
+            }
+        };
+        ResponseExtractor<String> reader = response -> readStream(response.getBody(), queued);
+
+        AbortableHttpCall call = new AbortableHttpCall();
+        Future<String> exchange;
+        try {
+            exchange = hedgeExecutor.submit(() -> {
+                try {
+                    return call.run(() -> callOnce(model, STREAM_GENERATE_CONTENT, mimeType, image, "stream", reader));
+                } finally {
+                    events.add(END_OF_STREAM);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            // No spare thread: read the whole stream, then replay its events once the Gemini call is over.
+            String text = callOnce(model, STREAM_GENERATE_CONTENT, mimeType, image, "stream", reader);
+            for (Consumer<PartialExtractionListener> event; (event = events.poll()) != null; ) {
+                event.accept(listener);
+            }
+            return text;
+        }
+
+        boolean relayed = false;
+        try {
+            for (Consumer<PartialExtractionListener> event; (event = events.take()) != END_OF_STREAM; ) {
+                event.accept(listener);
+            }
+            relayed = true;
+            return exchange.get();
+        } catch (ExecutionException ex) {
+            throw propagate(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for Gemini");
+        } finally {
+            if (!relayed) {
+                call.abort();
+                exchange.cancel(true);
+            }
+        }
+    }
+
+    private String readStream(InputStream body, PartialExtractionListener listener) throws IOException {
+        StreamingExtractionParser partial = new StreamingExtractionParser(
+            objectMapper.getFactory().createNonBlockingByteArrayParser(),
+            listener
+        );
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.startsWith("data:")) {
+                    continue;
+                }
+                JsonNode parts = objectMapper.readTree(line.substring(5))
+                    .path("candidates").path(0).path("content").path("parts");
+                for (JsonNode part : parts) {
+                    JsonNode textNode = part.get("text");
+                    if (textNode != null && textNode.isTextual() && !part.path("thought").asBoolean(false)) {
+                        partial.feed(textNode.asText());
+                    }
+                }
+            }
+            partial.finish();
+        } finally {
+            partial.close();
+        }
+        return partial.text();
+    }
+
+    private ReceiptExtraction served(ReceiptExtraction extraction, String servedBy, String tier, long startedAt) {
+        extraction.setExtractionModel(servedBy);
+        extraction.setExtractionTier(tier);
+        Timer.builder("receipt.extraction.latency")
+            .tag("tier", tier)
+            .publishPercentiles(0.5, 0.95)
+            .description("End-to-end extraction latency by routing tier, including escalations")
+            .register(meterRegistry)
+            .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        return extraction;
+    }
+
+    /**
+     * Sends the image to Gemini without materializing it: the stream is base64-encoded
+     * straight into the request body, so memory use does not grow with the image size.
+     * Transient failures (provider 429, 5xx, I/O timeouts) are retried with full-jitter backoff,
+     * reopening the image for every attempt; with hedging enabled a second request is fired once
+     * the first is slower than the recent p95 and whichever answers first wins.
+     */
+    private ReceiptExtraction extractWith(String targetModel, String mimeType, ImageSource image) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            String kind = attempt == 1 ? "primary" : "retry";
+            try {
+                byte[] responseBody = hedgingEnabled
+                    ? callHedged(targetModel, mimeType, image, kind)
+                    : callOnce(targetModel, GENERATE_CONTENT, mimeType, image, kind, READ_BODY);
+                return parseExtraction(responseBody);
+            } catch (RuntimeException ex) {
+                long delayMs = retryDelayMillis(ex, attempt);
+                if (delayMs < 0) {
+                    if (ex instanceof RestClientException) {
+                        throw new GeminiRequestException("Gemini API request failed", ex);
+                    }
+                    throw ex;
+                }
+                sleep(delayMs);
+            }
+        }
+    }
+
+    private <T> T callOnce(
+        String targetModel,
+        String action,
+        String mimeType,
+        ImageSource image,
+        String kind,
+        ResponseExtractor<T> responseExtractor
+    ) throws IOException {
+        String url = String.format("%s/v1beta/models/%s:%s", apiBase, targetModel, action);
+        // The image (an S3 GET) is opened before the gateway call and its read failures are kept out of
+        // RestTemplate's ResourceAccessException, so neither counts as Gemini latency or a provider failure.
+        try (InputStream stream = image.open()) {
+            return exchange(url, action, mimeType, stream, kind, targetModel, responseExtractor);
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private <T> T exchange(
+        String url,
+        String action,
+        String mimeType,
+        InputStream image,
+        String kind,
+        String targetModel,
+        ResponseExtractor<T> responseExtractor
+    ) throws IOException {
+        long startedAt = System.nanoTime();
+        String outcome = "failure";
+        try {
+            T result = geminiGateway.call(apiKey, () -> circuitBreaker.execute(() -> restTemplate.execute(
+                url,
+                HttpMethod.POST,
+                request -> writeRequest(request, mimeType, image),
+                responseExtractor
+            )));
+            outcome = "success";
+            if (GENERATE_CONTENT.equals(action)) {
+                recentLatencies.record(System.nanoTime() - startedAt);
+            }
+            return result;
+        } catch (UncheckedIOException ex) {
+            outcome = "image_read_failed";
+            throw ex;
+        } catch (RuntimeException ex) {
+            if (AbortableHttpCall.isCurrentAborted()) {
+                outcome = "cancelled";
+            } else {
+                outcome = isTransient(ex) ? "transient" : "failure";
+            }
+            throw ex;
+        } finally {
+            Timer.builder("gemini.request.attempts")
+                .tag("kind", kind)
+                .tag("outcome", outcome)
+                .tag("model", targetModel)
+                .description("Individual Gemini requests, including retries and hedges")
+                .register(meterRegistry)
+                .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private byte[] callHedged(String targetModel, String mimeType, ImageSource image, String kind) throws IOException {
+        ExecutorCompletionService<byte[]> completion = new ExecutorCompletionService<>(hedgeExecutor);
+        List<Future<byte[]>> requests = new ArrayList<>(2);
+        List<AbortableHttpCall> calls = List.of(new AbortableHttpCall(), new AbortableHttpCall());
+        try {
+            requests.add(completion.submit(() -> calls.get(0).run(
+                () -> callOnce(targetModel, GENERATE_CONTENT, mimeType, image, kind, READ_BODY)
+            )));
+        } catch (RejectedExecutionException ex) {
+            return callOnce(targetModel, GENERATE_CONTENT, mimeType, image, kind, READ_BODY);
+        }
+
+        try {
+            Future<byte[]> done = completion.poll(hedgeDelayMillis(), TimeUnit.MILLISECONDS);
+            if (done == null) {
+                try {
+                    requests.add(completion.submit(() -> calls.get(1).run(
+                        () -> callOnce(targetModel, GENERATE_CONTENT, mimeType, image, "hedge", READ_BODY)
+                    )));
+                    hedgesFired.increment();
+                } catch (RejectedExecutionException ignored) {
+                    // No spare thread; keep waiting on the primary request.
+                }
+                done = completion.take();
+            }
+
+            Throwable firstFailure = null;
+            for (int pending = requests.size(); ; ) {
+                try {
+                    byte[] responseBody = done.get();
+                    if (requests.size() > 1 && done == requests.get(1)) {
+                        hedgeWins.increment();
+                    }
+                    return responseBody;
+                } catch (ExecutionException ex) {
+                    if (firstFailure == null) {
+                        firstFailure = ex.getCause();
+                    }
+                }
+                if (--pending == 0) {
+                    break;
+                }
+                done = completion.take();
+            }
+            throw propagate(firstFailure);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for Gemini");
+        } finally {
+            // Cancelling alone leaves the loser blocked on its socket read, holding a connection and a gateway
+            // permit until the read timeout; aborting closes the connection so both are given back right away.
+            for (int i = 0; i < requests.size(); i++) {
+                if (!requests.get(i).isDone()) {
+                    calls.get(i).abort();
+                    requests.get(i).cancel(true);
+                }
+            }
+        }
+    }
+
+    private static RuntimeException propagate(Throwable failure) throws IOException {
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        throw new IllegalStateException("Gemini API request failed", failure);
+    }
+
+    private long hedgeDelayMillis() {
+        long p95Nanos = recentLatencies.p95();
+        return Math.max(hedgeMinDelayMs, TimeUnit.NANOSECONDS.toMillis(p95Nanos));
+    }
+
+    /**
+     * Returns the full-jitter backoff before the next attempt, or -1 when the failure is not
+     * transient or the attempts are used up.
+     */
+    private long retryDelayMillis(RuntimeException ex, int attempt) {
+        if (attempt >= maxAttempts || !isTransient(ex)) {
+            return -1;
+        }
+        long ceiling = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt - 1, 20));
+        long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        if (ex instanceof GeminiOverloadedException) {
+            long retryAfterMs = ((GeminiOverloadedException) ex).getRetryAfterSeconds() * 1000L;
+            if (retryAfterMs > maxBackoffMs) {
+                return -1;
+            }
+            delay = Math.max(delay, retryAfterMs);
+        }
+        return delay;
+    }
+
+    // generateContent has no side effects, so any transient failure is safe to repeat.
+    private boolean isTransient(RuntimeException ex) {
+        if (ex instanceof GeminiOverloadedException) {
+            return ((GeminiOverloadedException) ex).isProviderThrottled();
+        }
+        return ex instanceof HttpServerErrorException || ex instanceof ResourceAccessException;
+    }
+
+    private void sleep(long delayMs) {
+        try {
+            Thread.sleep(delayMs);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying Gemini request");
+        }
+    }
+
+    private void writeRequest(ClientHttpRequest request, String mimeType, InputStream image) throws IOException {
+        request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        request.getHeaders().set("x-goog-api-key", apiKey);
+        if (request instanceof StreamingHttpOutputMessage) {
+            ((StreamingHttpOutputMessage) request).setBody(body -> writeRequestBody(body, mimeType, image));
+        } else {
+            writeRequestBody(request.getBody(), mimeType, image);
+        }
+    }
+
+    void writeRequestBody(OutputStream body, String mimeType, InputStream image) throws IOException {
+        OutputStream buffered = new BufferedOutputStream(StreamUtils.nonClosing(body), 8192);
+        buffered.write(requestTemplate.head);
+        buffered.write(objectMapper.writeValueAsBytes(mimeType));
+        buffered.write(requestTemplate.middle);
+        // Closing the encoder writes the final padding; nonClosing keeps the HTTP body open.
+        try (OutputStream encoder = Base64.getEncoder().wrap(StreamUtils.nonClosing(buffered))) {
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = readImage(image, chunk)) >= 0) {
+                encoder.write(chunk, 0, read);
+            }
+        }
+        buffered.write(requestTemplate.tail);
+        buffered.flush();
+    }
+
+    private static int readImage(InputStream image, byte[] chunk) {
+        try {
+            return image.read(chunk);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Serializes the constant parts of the request (prompt, schema, generationConfig) once; only the
+     * mime type and the base64 image are written per call, between the three pre-encoded fragments.
+     */
+    private RequestTemplate buildRequestTemplate() {
+        Map<String, Object> inlineData = new LinkedHashMap<>();
+        inlineData.put("mime_type", MIME_TYPE_PLACEHOLDER);
+        inlineData.put("data", DATA_PLACEHOLDER);
+
+        List<Object> parts = List.of(
+            Collections.singletonMap("text", PROMPT),
+            Collections.singletonMap("inline_data", inlineData)
+        );
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("contents", List.of(Collections.singletonMap("parts", parts)));
+        request.put("generationConfig", buildGenerationConfig());
+
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(request);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Failed to build Gemini request template", ex);
+        }
+        String quotedMime = "\"" + MIME_TYPE_PLACEHOLDER + "\"";
+        int mimeAt = json.indexOf(quotedMime);
+        int dataAt = json.indexOf(DATA_PLACEHOLDER);
+        return new RequestTemplate(
+            json.substring(0, mimeAt).getBytes(StandardCharsets.UTF_8),
+            json.substring(mimeAt + quotedMime.length(), dataAt).getBytes(StandardCharsets.UTF_8),
+            json.substring(dataAt + DATA_PLACEHOLDER.length()).getBytes(StandardCharsets.UTF_8)
+        );
+    }
+
+    private static final class RequestTemplate {
+        private final byte[] head;
+        private final byte[] middle;
+        private final byte[] tail;
+
+        private RequestTemplate(byte[] head, byte[] middle, byte[] tail) {
+            this.head = head;
+            this.middle = middle;
+            this.tail = tail;
+        }
+    }
+
+    private Map<String, Object> buildGenerationConfig() {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("merchantName", mapSchemaType("string"));
+        properties.put("receiptDate", mapSchemaType("string"));
+        properties.put("currency", mapSchemaType("string"));
+        properties.put("category", mapSchemaType("string"));
+        properties.put("subtotal", mapSchemaType("string"));
+        properties.put("tax", mapSchemaType("string"));
+        properties.put("total", mapSchemaType("string"));
+
+        Map<String, Object> itemProps = new LinkedHashMap<>();
+        itemProps.put("description", mapSchemaType("string"));
+        itemProps.put("quantity", mapSchemaType("string"));
+        itemProps.put("unitPrice", mapSchemaType("string"));
+        itemProps.put("totalPrice", mapSchemaType("string"));
+        Map<String, Object> itemSchema = new LinkedHashMap<>();
+        itemSchema.put("type", "object");
+        itemSchema.put("properties", itemProps);
+
+        Map<String, Object> itemsArray = new LinkedHashMap<>();
+        itemsArray.put("type", "array");
+        itemsArray.put("items", itemSchema);
+        properties.put("items", itemsArray);
+
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("type", "object");
+        schema.put("properties", properties);
+
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("responseMimeType", "application/json");
+        config.put("responseSchema", schema);
+        return config;
+    }
+
+    private Map<String, Object> mapSchemaType(String type) {
+        return Collections.singletonMap("type", type);
+    }
+
+    /**
+     * Single streaming pass over the response: walks to candidates[0].content.parts[0].text and parses
+     * the JSON object inside it straight from the parser's text buffer, skipping any prose or code
+     * fences the model wrapped around it.
+     */
+    ReceiptExtraction parseExtraction(byte[] responseBody) throws IOException {
+        if (responseBody == null || responseBody.length == 0) {
+            throw new IllegalStateException("Empty response from Gemini");
+        }
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(responseBody)) {
+            boolean found = parser.nextToken() == JsonToken.START_OBJECT
+                && advanceToField(parser, "candidates") && parser.currentToken() == JsonToken.START_ARRAY
+                && parser.nextToken() == JsonToken.START_OBJECT
+                && advanceToField(parser, "content") && parser.currentToken() == JsonToken.START_OBJECT
+                && advanceToField(parser, "parts") && parser.currentToken() == JsonToken.START_ARRAY
+                && parser.nextToken() == JsonToken.START_OBJECT
+                && advanceToField(parser, "text") && parser.currentToken() == JsonToken.VALUE_STRING;
+            if (!found) {
+                throw new IllegalStateException("No text response from Gemini");
+            }
+
+            return readExtraction(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+        }
+    }
+
+    // Reads the JSON object inside the model text in place, skipping any prose or code fences around it.
+    private ReceiptExtraction readExtraction(char[] text, int offset, int length) throws IOException {
+        int end = offset + length;
+        int objectStart = offset;
+        while (objectStart < end && text[objectStart] != '{') {
+            objectStart++;
+        }
+        int objectEnd = end - 1;
+        while (objectEnd > objectStart && text[objectEnd] != '}') {
+            objectEnd--;
+        }
+        if (objectStart >= objectEnd) {
+            objectStart = offset;
+            objectEnd = end - 1;
+        }
+        try (JsonParser extraction = objectMapper.getFactory().createParser(text, objectStart, objectEnd - objectStart + 1)) {
+            return objectMapper.readValue(extraction, ReceiptExtraction.class);
+        }
+    }
+
+    // Leaves the parser on the value of the named field, skipping earlier fields of the current object.
+    private boolean advanceToField(JsonParser parser, String name) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if (name.equals(field)) {
+                return true;
+            }
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+    /**
+     * Incremental view over the model's JSON text: reports top-level scalar fields and each completed
+     * entry of "items". Malformed or trailing text just stops the incremental reporting; the final
+     * parse of the full text decides the result.
+     */
+    private static final class StreamingExtractionParser {
+        private final JsonParser parser;
+        private final ByteArrayFeeder feeder;
+        private final PartialExtractionListener listener;
+        private final StringBuilder text = new StringBuilder();
+        private boolean started;
+        private boolean broken;
+        private int objectDepth;
+        private int otherArrayDepth;
+        private boolean inItems;
+        private String field;
+        private String itemField;
+        private ReceiptItemExtraction item;
+        private int itemIndex;
+
+        private StreamingExtractionParser(JsonParser parser, PartialExtractionListener listener) {
+            this.parser = parser;
+            this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+            this.listener = listener;
+        }
+
+        private void feed(String fragment) {
+            text.append(fragment);
+            if (broken) {
+                return;
+            }
+            String json = fragment;
+            if (!started) {
+                int brace = fragment.indexOf('{');
+                if (brace < 0) {
+                    return;
+                }
+                started = true;
+                json = fragment.substring(brace);
+            }
+            byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+            try {
+                feeder.feedInput(bytes, 0, bytes.length);
+                drain();
+            } catch (IOException ex) {
+                broken = true;
+            }
+        }
+
+        private void finish() {
+            if (!started || broken) {
+                return;
+            }
+            feeder.endOfInput();
+            try {
+                drain();
+            } catch (IOException ex) {
+                broken = true;
+            }
+        }
+
+        private void close() throws IOException {
+            parser.close();
+        }
+
+        private String text() {
+            return text.toString();
+        }
+
+        private void drain() throws IOException {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                switch (token) {
+                    case START_OBJECT:
+                        objectDepth++;
+                        if (inItems && otherArrayDepth == 0 && objectDepth == 2) {
+                            item = new ReceiptItemExtraction();
+                        }
+                        break;
+                    case END_OBJECT:
+                        if (item != null && objectDepth == 2) {
+                            listener.onItem(itemIndex++, item);
+                            item = null;
+                        }
+                        objectDepth--;
+                        break;
+                    case START_ARRAY:
+                        if (objectDepth == 1 && otherArrayDepth == 0 && !inItems && "items".equals(field)) {
+                            inItems = true;
+                        } else {
+                            otherArrayDepth++;
+                        }
+                        break;
+                    case END_ARRAY:
+                        if (otherArrayDepth > 0) {
+                            otherArrayDepth--;
+                        } else {
+                            inItems = false;
+                        }
+                        break;
+                    case FIELD_NAME:
+                        if (objectDepth == 1) {
+                            field = parser.getCurrentName();
+                        } else if (objectDepth == 2) {
+                            itemField = parser.getCurrentName();
+                        }
+                        break;
+                    case VALUE_NULL:
+                        break;
+                    default:
+                        if (token.isScalarValue() && otherArrayDepth == 0) {
+                            onValue(parser.getText());
+                        }
+                        break;
+                }
+            }
+        }
+
+        private void onValue(String value) {
+            if (objectDepth == 1 && !inItems) {
+                listener.onField(field, value);
+            } else if (item != null && objectDepth == 2) {
+                if ("description".equals(itemField)) {
+                    item.setDescription(value);
+                } else if ("quantity".equals(itemField)) {
+                    item.setQuantity(value);
+                } else if ("unitPrice".equals(itemField)) {
+                    item.setUnitPrice(value);
+                } else if ("totalPrice".equals(itemField)) {
+                    item.setTotalPrice(value);
+                }
+            }
+        }
+    }
+
+    private static final class LatencyWindow {
+        private static final int SIZE = 200;
+        private static final int MIN_SAMPLES = 20;
+
+        private final long[] samples = new long[SIZE];
+        private int next;
+        private int count;
+
+        private synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % SIZE;
+            count = Math.min(SIZE, count + 1);
+        }
+
+        private synchronized long p95() {
+            if (count < MIN_SAMPLES) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            return sorted[(int) Math.ceil(count * 0.95) - 1];
+        }
+    }
+}
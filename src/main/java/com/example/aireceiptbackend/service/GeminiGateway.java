@@ -0,0 +1,253 @@
+package com.example.aireceiptbackend.service;
+
+import com.example.aireceiptbackend.exception.GeminiOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpStatusCodeException;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission control for outbound Gemini calls: a per-API-key token bucket, then an adaptive
+ * concurrency limit (AIMD: grows by one per window of fast successes, shrinks on provider 429s or
+ * slow calls) with a bounded wait queue. Calls that cannot be admitted in time fail fast with
+ * {@link GeminiOverloadedException} instead of piling up on the provider.
+ */
+@Service
+public class GeminiGateway {
+
+    @FunctionalInterface
+    public interface GatewayCall<T> {
+        T execute() throws IOException;
+    }
+
+    private final int minConcurrency;
+    private final int maxConcurrency;
+    private final int queueCapacity;
+    private final long maxQueueWaitNanos;
+    private final long slowCallNanos;
+    private final double decreaseFactor;
+    private final double requestsPerSecond;
+    private final double burst;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitReleased = lock.newCondition();
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final Timer queueTime;
+    private final Counter queueFullRejections;
+    private final Counter queueTimeoutRejections;
+    private final Counter rateLimitedRejections;
+    private final Counter providerThrottles;
+
+    private double limit;
+    private int inFlight;
+    private int waiting;
+
+    public GeminiGateway(
+        MeterRegistry meterRegistry,
+        @Value("${gemini.gateway.min-concurrency:1}") int minConcurrency,
+        @Value("${gemini.gateway.initial-concurrency:8}") int initialConcurrency,
+        @Value("${gemini.gateway.max-concurrency:32}") int maxConcurrency,
+        @Value("${gemini.gateway.queue-capacity:100}") int queueCapacity,
+        @Value("${gemini.gateway.max-queue-wait-ms:5000}") long maxQueueWaitMs,
+        @Value("${gemini.gateway.slow-call-ms:15000}") long slowCallMs,
+        @Value("${gemini.gateway.decrease-factor:0.7}") double decreaseFactor,
+        @Value("${gemini.gateway.requests-per-second:0}") double requestsPerSecond,
+        @Value("${gemini.gateway.burst:10}") double burst
+    ) {
+        this.minConcurrency = Math.max(1, minConcurrency);
+        this.maxConcurrency = Math.max(this.minConcurrency, maxConcurrency);
+        this.limit = Math.min(this.maxConcurrency, Math.max(this.minConcurrency, initialConcurrency));
+        this.queueCapacity = Math.max(0, queueCapacity);
+        this.maxQueueWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxQueueWaitMs));
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, slowCallMs));
+        this.decreaseFactor = Math.min(0.95, Math.max(0.1, decreaseFactor));
+        this.requestsPerSecond = requestsPerSecond;
+        this.burst = Math.max(1, burst);
+
+        this.queueTime = Timer.builder("gemini.gateway.queue.time")
+            .description("Time Gemini calls waited for a rate-limit token and a concurrency permit")
+            .register(meterRegistry);
+        this.queueFullRejections = rejections(meterRegistry, "queue_full");
+        this.queueTimeoutRejections = rejections(meterRegistry, "queue_timeout");
+        this.rateLimitedRejections = rejections(meterRegistry, "rate_limited");
+        this.providerThrottles = rejections(meterRegistry, "provider_429");
+        Gauge.builder("gemini.gateway.concurrency.limit", this, gateway -> gateway.snapshot(0))
+            .description("Current adaptive concurrency limit for Gemini calls")
+            .register(meterRegistry);
+        Gauge.builder("gemini.gateway.in.flight", this, gateway -> gateway.snapshot(1))
+            .description("Gemini calls currently in flight")
+            .register(meterRegistry);
+        Gauge.builder("gemini.gateway.queued", this, gateway -> gateway.snapshot(2))
+            .description("Gemini calls waiting for a concurrency permit")
+            .register(meterRegistry);
+    }
+
+    public <T> T call(String apiKey, GatewayCall<T> call) throws IOException {
+        long queuedAt = System.nanoTime();
+        try {
+            awaitToken(apiKey);
+            acquire(queuedAt + maxQueueWaitNanos);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for Gemini capacity");
+        } finally {
+            queueTime.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+        }
+
+        long startedAt = System.nanoTime();
+        boolean succeeded = false;
+        boolean overloaded = false;
+        try {
+            T result = call.execute();
+            succeeded = true;
+            return result;
+        } catch (HttpStatusCodeException ex) {
+            if (ex.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS) {
+                overloaded = true;
+                providerThrottles.increment();
+                throw new GeminiOverloadedException(
+                    "Receipt extraction is busy, please retry shortly",
+                    parseRetryAfter(ex.getResponseHeaders()),
+                    true
+                );
+            }
+            throw ex;
+        } finally {
+            boolean slow = System.nanoTime() - startedAt > slowCallNanos;
+            release(overloaded || slow, succeeded && !slow);
+        }
+    }
+
+    private void awaitToken(String apiKey) throws InterruptedException {
+        if (requestsPerSecond <= 0) {
+            return;
+        }
+        TokenBucket bucket = buckets.computeIfAbsent(apiKey == null ? "" : apiKey, key -> new TokenBucket());
+        long waitNanos = bucket.reserve();
+        if (waitNanos < 0) {
+            rateLimitedRejections.increment();
+            throw new GeminiOverloadedException("Receipt extraction is busy, please retry shortly", toSeconds(-waitNanos));
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    private void acquire(long deadline) throws InterruptedException {
+        lock.lock();
+        try {
+            if (waiting == 0 && inFlight < (int) limit) {
+                inFlight++;
+                return;
+            }
+            if (waiting >= queueCapacity) {
+                queueFullRejections.increment();
+                throw new GeminiOverloadedException("Receipt extraction is busy, please retry shortly", toSeconds(maxQueueWaitNanos));
+            }
+
+            waiting++;
+            try {
+                while (inFlight >= (int) limit) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        queueTimeoutRejections.increment();
+                        throw new GeminiOverloadedException("Receipt extraction is busy, please retry shortly", toSeconds(maxQueueWaitNanos));
+                    }
+                    permitReleased.awaitNanos(remaining);
+                }
+                inFlight++;
+            } finally {
+                waiting--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Other failures (timeouts, 5xx) free the permit without moving the limit either way.
+    private void release(boolean congested, boolean healthy) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (congested) {
+                limit = Math.max(minConcurrency, limit * decreaseFactor);
+            } else if (healthy) {
+                limit = Math.min(maxConcurrency, limit + 1.0 / limit);
+            }
+            permitReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private double snapshot(int metric) {
+        lock.lock();
+        try {
+            if (metric == 0) {
+                return Math.floor(limit);
+            }
+            return metric == 1 ? inFlight : waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long parseRetryAfter(HttpHeaders headers) {
+        String value = headers != null ? headers.getFirst(HttpHeaders.RETRY_AFTER) : null;
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException ignored) {
+                // HTTP-date form; fall back to the queue wait below.
+            }
+        }
+        return toSeconds(maxQueueWaitNanos);
+    }
+
+    private static long toSeconds(long nanos) {
+        return Math.max(1, (nanos + 999_999_999L) / 1_000_000_000L);
+    }
+
+    private static Counter rejections(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("gemini.gateway.rejections")
+            .tag("reason", reason)
+            .description("Gemini calls rejected or throttled before completing")
+            .register(meterRegistry);
+    }
+
+    private final class TokenBucket {
+        private double tokens = burst;
+        private long refilledAt = System.nanoTime();
+
+        /**
+         * Takes a token, borrowing against future refills when the wait fits in the queue budget.
+         * Returns the nanos to wait before calling, or the negated wait when it does not fit.
+         */
+        private synchronized long reserve() {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - refilledAt) * requestsPerSecond / 1_000_000_000d);
+            refilledAt = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            long waitNanos = (long) Math.ceil((1 - tokens) / requestsPerSecond * 1_000_000_000d);
+            if (waitNanos > maxQueueWaitNanos) {
+                return -waitNanos;
+            }
+            tokens -= 1;
+            return waitNanos;
+        }
+    }
+}
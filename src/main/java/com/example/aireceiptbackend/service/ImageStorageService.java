@@ -6,7 +6,6 @@ import com.example.aireceiptbackend.model.ImageAsset;
 import com.example.aireceiptbackend.model.PresignedUrlResponse;
 import com.example.aireceiptbackend.model.User;
 import com.example.aireceiptbackend.repository.ImageAssetRepository;
-import com.example.aireceiptbackend.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
@@ -27,7 +26,7 @@ import java.util.UUID;
 public class ImageStorageService {
 
     private final S3Presigner s3Presigner;
-    private final UserRepository userRepository;
+    private final UserResolutionService userResolutionService;
     private final ImageAssetRepository imageAssetRepository;
     private final String bucket;
     private final int uploadExpirySeconds;
@@ -35,14 +34,14 @@ public class ImageStorageService {
 
     public ImageStorageService(
         S3Presigner s3Presigner,
-        UserRepository userRepository,
+        UserResolutionService userResolutionService,
         ImageAssetRepository imageAssetRepository,
         @Value("${aws.s3.bucket}") String bucket,
         @Value("${aws.s3.upload-expiry-seconds:300}") int uploadExpirySeconds,
         @Value("${aws.s3.download-expiry-seconds:120}") int downloadExpirySeconds
     ) {
         this.s3Presigner = s3Presigner;
-        this.userRepository = userRepository;
+        this.userResolutionService = userResolutionService;
         this.imageAssetRepository = imageAssetRepository;
         this.bucket = bucket;
         this.uploadExpirySeconds = uploadExpirySeconds;
@@ -50,7 +49,7 @@ public class ImageStorageService {
     }
 
     public CreateUploadUrlResponse createUploadUrl(String principal, CreateUploadUrlRequest request) {
-        User user = resolveUser(principal);
+        User user = userResolutionService.resolve(principal);
         String objectKey = buildObjectKey(user.getId(), request != null ? request.getFileName() : null);
         String contentType = normalizeContentType(request != null ? request.getContentType() : null);
 
@@ -86,7 +85,7 @@ public class ImageStorageService {
     }
 
     public PresignedUrlResponse getPresignedDownloadUrl(String principal, Long imageId) {
-        User user = resolveUser(principal);
+        User user = userResolutionService.resolve(principal);
         ImageAsset imageAsset = imageAssetRepository.findByIdAndUser(imageId, user)
             .orElseThrow(() -> new IllegalArgumentException("Image not found"));
 
@@ -108,16 +107,6 @@ public class ImageStorageService {
         return response;
     }
 
-    private User resolveUser(String principal) {
-        String normalized = trimToNull(principal);
-        if (normalized == null) {
-            throw new IllegalArgumentException("Unauthorized");
-        }
-        return userRepository.findByEmail(normalized)
-            .or(() -> userRepository.findByUsername(normalized))
-            .orElseThrow(() -> new IllegalArgumentException("User not found"));
-    }
-
     private String buildObjectKey(Long userId, String fileName) {
         LocalDate date = LocalDate.now();
         String ext = extractExtension(fileName);
@@ -0,0 +1,102 @@
+package com.example.aireceiptbackend.service;
+
+import com.example.aireceiptbackend.util.JwtUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verifies bearer tokens, remembering successfully verified claims by SHA-256 of the token so
+ * repeated requests with the same token skip the HMAC check. An entry never outlives the token's
+ * exp claim. Failed verifications are not cached.
+ */
+@Service
+public class JwtVerificationService {
+
+    private final Cache<String, Claims> verifiedTokens;
+    private final long maxTtlNanos;
+
+    public JwtVerificationService(
+        MeterRegistry meterRegistry,
+        @Value("${app.auth.token-cache.max-size:10000}") long maxSize,
+        @Value("${app.auth.token-cache.max-ttl-seconds:300}") long maxTtlSeconds
+    ) {
+        this.maxTtlNanos = TimeUnit.SECONDS.toNanos(Math.max(1, maxTtlSeconds));
+        this.verifiedTokens = Caffeine.newBuilder()
+            .maximumSize(Math.max(1, maxSize))
+            .expireAfter(new Expiry<String, Claims>() {
+                @Override
+                public long expireAfterCreate(String key, Claims claims, long currentTime) {
+                    return ttlNanos(claims);
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+                    return ttlNanos(claims);
+                }
+
+                @Override
+                public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "jwt.verified");
+    }
+
+    public Optional<Claims> verify(String token) {
+        if (token == null || token.isEmpty()) {
+            return Optional.empty();
+        }
+
+        String key = sha256(token);
+        Claims cached = verifiedTokens.getIfPresent(key);
+        if (cached != null && !isExpired(cached)) {
+            return Optional.of(cached);
+        }
+
+        Claims claims = JwtUtil.getClaimsFromToken(token);
+        if (claims == null) {
+            return Optional.empty();
+        }
+        verifiedTokens.put(key, claims);
+        return Optional.of(claims);
+    }
+
+    private long ttlNanos(Claims claims) {
+        Date expiration = claims.getExpiration();
+        if (expiration == null) {
+            return maxTtlNanos;
+        }
+        long remainingMs = expiration.getTime() - System.currentTimeMillis();
+        return Math.max(0L, Math.min(maxTtlNanos, TimeUnit.MILLISECONDS.toNanos(remainingMs)));
+    }
+
+    private boolean isExpired(Claims claims) {
+        Date expiration = claims.getExpiration();
+        return expiration != null && expiration.getTime() <= System.currentTimeMillis();
+    }
+
+    private String sha256(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+}
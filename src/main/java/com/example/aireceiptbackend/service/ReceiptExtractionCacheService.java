@@ -0,0 +1,113 @@
+package com.example.aireceiptbackend.service;
+
+import com.example.aireceiptbackend.model.ReceiptExtraction;
+import com.example.aireceiptbackend.model.ReceiptExtractionCacheEntry;
+import com.example.aireceiptbackend.repository.ReceiptExtractionCacheRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Service
+public class ReceiptExtractionCacheService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReceiptExtractionCacheService.class);
+
+    private final ReceiptExtractionCacheRepository receiptExtractionCacheRepository;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final Counter hits;
+    private final Counter misses;
+    private final Timer savedLatency;
+
+    public ReceiptExtractionCacheService(
+        ReceiptExtractionCacheRepository receiptExtractionCacheRepository,
+        ObjectMapper objectMapper,
+        MeterRegistry meterRegistry,
+        @Value("${app.receipt.extraction-cache.enabled:true}") boolean enabled
+    ) {
+        this.receiptExtractionCacheRepository = receiptExtractionCacheRepository;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.hits = Counter.builder("receipt.extraction.cache.requests")
+            .tag("result", "hit")
+            .description("Receipt extractions served from the content-hash cache")
+            .register(meterRegistry);
+        this.misses = Counter.builder("receipt.extraction.cache.requests")
+            .tag("result", "miss")
+            .description("Receipt extractions that required a model call")
+            .register(meterRegistry);
+        this.savedLatency = Timer.builder("receipt.extraction.cache.saved.latency")
+            .description("Model latency avoided by serving a cached extraction")
+            .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Optional<ReceiptExtraction> lookup(String contentSha256, String model, String promptVersion) {
+        if (!enabled || contentSha256 == null) {
+            return Optional.empty();
+        }
+
+        Optional<ReceiptExtractionCacheEntry> entry = receiptExtractionCacheRepository
+            .findByContentSha256AndModelAndPromptVersion(contentSha256, model, promptVersion);
+        if (entry.isEmpty()) {
+            misses.increment();
+            return Optional.empty();
+        }
+
+        ReceiptExtraction extraction;
+        try {
+            extraction = objectMapper.readValue(entry.get().getExtractionJson(), ReceiptExtraction.class);
+        } catch (JsonProcessingException ex) {
+            log.warn("Ignoring unreadable extraction cache entry {}", entry.get().getId());
+            misses.increment();
+            return Optional.empty();
+        }
+
+        extraction.setExtractionModel(model);
+        extraction.setExtractionTier("cache");
+        hits.increment();
+        if (entry.get().getExtractionLatencyMs() != null) {
+            savedLatency.record(Duration.ofMillis(entry.get().getExtractionLatencyMs()));
+        }
+        receiptExtractionCacheRepository.recordHit(entry.get().getId(), LocalDateTime.now());
+        return Optional.of(extraction);
+    }
+
+    public void store(
+        String contentSha256,
+        String model,
+        String promptVersion,
+        String extractionJson,
+        long extractionLatencyMs
+    ) {
+        if (!enabled || contentSha256 == null || extractionJson == null) {
+            return;
+        }
+
+        ReceiptExtractionCacheEntry entry = new ReceiptExtractionCacheEntry();
+        entry.setContentSha256(contentSha256);
+        entry.setModel(model);
+        entry.setPromptVersion(promptVersion);
+        entry.setExtractionJson(extractionJson);
+        entry.setExtractionLatencyMs(extractionLatencyMs);
+        try {
+            receiptExtractionCacheRepository.save(entry);
+        } catch (DataIntegrityViolationException ignored) {
+            // Another scan of the same image stored the entry first.
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.aireceiptbackend.service;
+
+import com.example.aireceiptbackend.model.ReceiptExtraction;
+import com.example.aireceiptbackend.model.ReceiptItemExtraction;
+import com.example.aireceiptbackend.util.ReceiptFieldParser;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+/**
+ * Plausibility checks used to decide whether a fast-tier extraction is good enough or should be
+ * escalated: merchant present, date parses, subtotal + tax matches total and item totals add up.
+ * Returns the first failed check as a short reason, or empty when the extraction passes.
+ */
+@Service
+public class ReceiptExtractionValidator {
+
+    private final BigDecimal absoluteTolerance;
+    private final BigDecimal relativeTolerance;
+
+    public ReceiptExtractionValidator(
+        @Value("${gemini.routing.amount-tolerance:0.05}") BigDecimal absoluteTolerance,
+        @Value("${gemini.routing.amount-tolerance-ratio:0.01}") BigDecimal relativeTolerance
+    ) {
+        this.absoluteTolerance = absoluteTolerance.abs();
+        this.relativeTolerance = relativeTolerance.abs();
+    }
+
+    public Optional<String> validate(ReceiptExtraction extraction) {
+        if (extraction == null) {
+            return Optional.of("empty");
+        }
+        if (extraction.getMerchantName() == null || extraction.getMerchantName().trim().isEmpty()) {
+            return Optional.of("missing_merchant");
+        }
+        if (ReceiptFieldParser.parseDate(extraction.getReceiptDate()) == null) {
+            return Optional.of("invalid_date");
+        }
+
+        BigDecimal total = ReceiptFieldParser.parseAmount(extraction.getTotal());
+        if (total == null) {
+            return Optional.of("missing_total");
+        }
+        BigDecimal subtotal = ReceiptFieldParser.parseAmount(extraction.getSubtotal());
+        BigDecimal tax = ReceiptFieldParser.parseAmount(extraction.getTax());
+        if (subtotal != null && !matches(subtotal.add(tax != null ? tax : BigDecimal.ZERO), total)) {
+            return Optional.of("totals_mismatch");
+        }
+
+        if (extraction.getItems() != null && !extraction.getItems().isEmpty()) {
+            BigDecimal itemsTotal = BigDecimal.ZERO;
+            for (ReceiptItemExtraction item : extraction.getItems()) {
+                BigDecimal itemTotal = item != null ? ReceiptFieldParser.parseAmount(item.getTotalPrice()) : null;
+                if (itemTotal == null) {
+                    return Optional.of("incomplete_items");
+                }
+                itemsTotal = itemsTotal.add(itemTotal);
+            }
+            // Items usually add up to the subtotal; receipts without one list tax-inclusive prices.
+            if (!matches(itemsTotal, subtotal != null ? subtotal : total) && !matches(itemsTotal, total)) {
+                return Optional.of("items_mismatch");
+            }
+        }
+        return Optional.empty();
+    }
+
+    private boolean matches(BigDecimal actual, BigDecimal expected) {
+        BigDecimal tolerance = absoluteTolerance.max(expected.abs().multiply(relativeTolerance));
+        return actual.subtract(expected).abs().compareTo(tolerance) <= 0;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.aireceiptbackend.service;
+
+import com.example.aireceiptbackend.model.ReceiptExtraction;
+import com.example.aireceiptbackend.model.ReceiptItemExtraction;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Turns a receipt image into structured fields. The active implementation is selected with
+ * {@code app.receipt.extractor.provider} ({@code gemini} by default, {@code stub} for offline load tests).
+ */
+public interface ReceiptExtractor {
+
+    boolean isConfigured();
+
+    /**
+     * Identifies the model behind the extractions; part of the extraction cache key.
+     */
+    String getModel();
+
+    /**
+     * Bump whenever the prompt or response schema changes so cached extractions are not reused.
+     */
+    String getPromptVersion();
+
+    /**
+     * Extracts the receipt. The image source may be opened more than once, for example on retries.
+     */
+    ReceiptExtraction extractReceipt(String mimeType, ImageSource image) throws IOException;
+
+    /**
+     * Like {@link #extractReceipt} but reports fields and items to the listener as soon as they are
+     * known. Providers without a streaming API report everything once the extraction completes.
+     */
+    default ReceiptExtraction extractReceiptStreaming(
+        String mimeType,
+        ImageSource image,
+        PartialExtractionListener listener
+    ) throws IOException {
+        ReceiptExtraction extraction = extractReceipt(mimeType, image);
+        replay(extraction, listener);
+        return extraction;
+    }
+
+    static void replay(ReceiptExtraction extraction, PartialExtractionListener listener) {
+        if (extraction == null) {
+            return;
+        }
+        reportField(listener, "merchantName", extraction.getMerchantName());
+        reportField(listener, "receiptDate", extraction.getReceiptDate());
+        reportField(listener, "currency", extraction.getCurrency());
+        reportField(listener, "category", extraction.getCategory());
+        reportField(listener, "subtotal", extraction.getSubtotal());
+        reportField(listener, "tax", extraction.getTax());
+        reportField(listener, "total", extraction.getTotal());
+        if (extraction.getItems() != null) {
+            for (int i = 0; i < extraction.getItems().size(); i++) {
+                listener.onItem(i, extraction.getItems().get(i));
+            }
+        }
+    }
+
+    private static void reportField(PartialExtractionListener listener, String name, String value) {
+        if (value != null) {
+            listener.onField(name, value);
+        }
+    }
+
+    @FunctionalInterface
+    interface ImageSource {
+        InputStream open() throws IOException;
+    }
+
+    interface PartialExtractionListener {
+        void onField(String name, String value);
+
+        void onItem(int index, ReceiptItemExtraction item);
+    }
+}
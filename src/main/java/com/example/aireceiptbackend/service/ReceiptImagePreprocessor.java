@@ -0,0 +1,295 @@
+package com.example.aireceiptbackend.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.w3c.dom.NodeList;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Optional;
+
+/**
+ * Shrinks receipt photos before they are sent to the model: downscales to a maximum long edge,
+ * applies the EXIF orientation (ImageIO ignores it), optionally converts to grayscale and re-encodes
+ * as JPEG without any metadata (EXIF is dropped, so the pixels must already be upright).
+ */
+@Service
+public class ReceiptImagePreprocessor {
+
+    public static final String OUTPUT_CONTENT_TYPE = "image/jpeg";
+
+    private static final long MAX_SOURCE_PIXELS = 100_000_000L;
+    private static final int APP1_MARKER = 0xE1;
+    private static final int ORIENTATION_TAG = 0x0112;
+
+    private final boolean enabled;
+    private final int maxLongEdge;
+    private final boolean grayscale;
+    private final float jpegQuality;
+    private final DistributionSummary originalBytes;
+    private final DistributionSummary preprocessedBytes;
+
+    public ReceiptImagePreprocessor(
+        MeterRegistry meterRegistry,
+        @Value("${app.receipt.preprocess.enabled:true}") boolean enabled,
+        @Value("${app.receipt.preprocess.max-long-edge:1600}") int maxLongEdge,
+        @Value("${app.receipt.preprocess.grayscale:true}") boolean grayscale,
+        @Value("${app.receipt.preprocess.jpeg-quality:0.85}") float jpegQuality
+    ) {
+        this.enabled = enabled;
+        this.maxLongEdge = Math.max(256, maxLongEdge);
+        this.grayscale = grayscale;
+        this.jpegQuality = Math.min(1.0f, Math.max(0.1f, jpegQuality));
+        this.originalBytes = DistributionSummary.builder("receipt.image.payload.bytes")
+            .tag("stage", "original")
+            .baseUnit("bytes")
+            .description("Size of receipt images as uploaded")
+            .register(meterRegistry);
+        this.preprocessedBytes = DistributionSummary.builder("receipt.image.payload.bytes")
+            .tag("stage", "preprocessed")
+            .baseUnit("bytes")
+            .description("Size of receipt images after preprocessing")
+            .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Names the output settings, so extractions cached for one variant are not served for another.
+    public String variant() {
+        return enabled ? maxLongEdge + (grayscale ? "-gray" : "") : "original";
+    }
+
+    public String derivedObjectKey(String objectKey) {
+        // "-upright" keeps derived images stored before orientation was applied from being reused.
+        return objectKey + ".gemini-" + maxLongEdge + (grayscale ? "-gray" : "") + "-upright.jpg";
+    }
+
+    /**
+     * Returns the re-encoded image, or empty when the source format cannot be decoded
+     * (for example HEIC or PDF), in which case the original should be sent as-is.
+     */
+    public Optional<byte[]> preprocess(InputStream source, Long sourceSizeBytes) throws IOException {
+        DecodedImage decoded = decode(source);
+        if (decoded == null) {
+            return Optional.empty();
+        }
+
+        BufferedImage output = orient(resize(decoded.image), decoded.orientation);
+        byte[] encoded = encodeJpeg(output);
+        if (sourceSizeBytes != null && sourceSizeBytes > 0) {
+            originalBytes.record(sourceSizeBytes);
+        }
+        preprocessedBytes.record(encoded.length);
+        return Optional.of(encoded);
+    }
+
+    private DecodedImage decode(InputStream source) throws IOException {
+        try (ImageInputStream input = new MemoryCacheImageInputStream(source)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, false);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > MAX_SOURCE_PIXELS) {
+                    return null;
+                }
+
+                // Coarse subsampling during decode keeps at least 2x the target resolution for the smooth resize below.
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, Math.max(width, height) / (maxLongEdge * 2));
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                int orientation = readOrientation(reader.getImageMetadata(0));
+                return new DecodedImage(reader.read(0, param), orientation);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private BufferedImage resize(BufferedImage source) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double scale = Math.min(1.0, (double) maxLongEdge / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+
+        BufferedImage target = new BufferedImage(
+            targetWidth,
+            targetHeight,
+            grayscale ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_INT_RGB
+        );
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, targetWidth, targetHeight);
+            graphics.drawImage(source, 0, 0, targetWidth, targetHeight, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    /**
+     * Returns the EXIF orientation (1-8) from a JPEG's APP1 segment, or 1 when there is none.
+     */
+    private static int readOrientation(IIOMetadata metadata) {
+        if (metadata == null || !"javax_imageio_jpeg_image_1.0".equals(metadata.getNativeMetadataFormatName())) {
+            return 1;
+        }
+        IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree("javax_imageio_jpeg_image_1.0");
+        NodeList segments = root.getElementsByTagName("unknown");
+        for (int i = 0; i < segments.getLength(); i++) {
+            IIOMetadataNode segment = (IIOMetadataNode) segments.item(i);
+            if (!String.valueOf(APP1_MARKER).equals(segment.getAttribute("MarkerTag"))) {
+                continue;
+            }
+            Object data = segment.getUserObject();
+            if (data instanceof byte[]) {
+                int orientation = readExifOrientation((byte[]) data);
+                if (orientation > 0) {
+                    return orientation;
+                }
+            }
+        }
+        return 1;
+    }
+
+    // APP1 payload: "Exif\0\0", then a TIFF header whose IFD0 may carry the orientation tag.
+    private static int readExifOrientation(byte[] app1) {
+        if (app1.length < 14 || !"Exif".equals(new String(app1, 0, 4, StandardCharsets.US_ASCII))) {
+            return -1;
+        }
+        ByteBuffer tiff = ByteBuffer.wrap(app1, 6, app1.length - 6).slice();
+        if (tiff.get(0) == 'I' && tiff.get(1) == 'I') {
+            tiff.order(ByteOrder.LITTLE_ENDIAN);
+        } else if (tiff.get(0) != 'M' || tiff.get(1) != 'M') {
+            return -1;
+        }
+        long ifd = Integer.toUnsignedLong(tiff.getInt(4));
+        if (ifd < 8 || ifd + 2 > tiff.limit()) {
+            return -1;
+        }
+        int entries = Short.toUnsignedInt(tiff.getShort((int) ifd));
+        for (int i = 0; i < entries; i++) {
+            int entry = (int) ifd + 2 + i * 12;
+            if (entry + 12 > tiff.limit()) {
+                return -1;
+            }
+            if (Short.toUnsignedInt(tiff.getShort(entry)) == ORIENTATION_TAG) {
+                int orientation = Short.toUnsignedInt(tiff.getShort(entry + 8));
+                return orientation >= 1 && orientation <= 8 ? orientation : -1;
+            }
+        }
+        return -1;
+    }
+
+    private BufferedImage orient(BufferedImage image, int orientation) {
+        if (orientation <= 1 || orientation > 8) {
+            return image;
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        AffineTransform transform;
+        switch (orientation) {
+            case 2:
+                transform = new AffineTransform(-1, 0, 0, 1, width, 0);
+                break;
+            case 3:
+                transform = new AffineTransform(-1, 0, 0, -1, width, height);
+                break;
+            case 4:
+                transform = new AffineTransform(1, 0, 0, -1, 0, height);
+                break;
+            case 5:
+                transform = new AffineTransform(0, 1, 1, 0, 0, 0);
+                break;
+            case 6:
+                transform = new AffineTransform(0, 1, -1, 0, height, 0);
+                break;
+            case 7:
+                transform = new AffineTransform(0, -1, -1, 0, height, width);
+                break;
+            default:
+                transform = new AffineTransform(0, -1, 1, 0, 0, width);
+                break;
+        }
+
+        boolean swapsAxes = orientation >= 5;
+        BufferedImage target = new BufferedImage(
+            swapsAxes ? height : width,
+            swapsAxes ? width : height,
+            image.getType()
+        );
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+            graphics.drawImage(image, transform, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        if (!writers.hasNext()) {
+            throw new IllegalStateException("No JPEG encoder available");
+        }
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (MemoryCacheImageOutputStream output = new MemoryCacheImageOutputStream(buffer)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return buffer.toByteArray();
+    }
+
+    private static final class DecodedImage {
+        private final BufferedImage image;
+        private final int orientation;
+
+        private DecodedImage(BufferedImage image, int orientation) {
+            this.image = image;
+            this.orientation = orientation;
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package com.example.aireceiptbackend.service;
+
+import com.example.aireceiptbackend.exception.DailyReceiptLimitExceededException;
+import com.example.aireceiptbackend.exception.GeminiOverloadedException;
+import com.example.aireceiptbackend.model.Receipt;
+import com.example.aireceiptbackend.model.ReceiptParseJob;
+import com.example.aireceiptbackend.model.ReceiptParseJobResponse;
+import com.example.aireceiptbackend.model.ReceiptParseResponse;
+import com.example.aireceiptbackend.model.User;
+import com.example.aireceiptbackend.repository.ImageAssetRepository;
+import com.example.aireceiptbackend.repository.ReceiptParseJobRepository;
+import com.example.aireceiptbackend.repository.ReceiptRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class ReceiptParseJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReceiptParseJobService.class);
+
+    private static final int SWEEP_BATCH_SIZE = 100;
+    private static final int MAX_ERROR_MESSAGE_LENGTH = 512;
+
+    private final ReceiptParseJobRepository receiptParseJobRepository;
+    private final ImageAssetRepository imageAssetRepository;
+    private final ReceiptRepository receiptRepository;
+    private final UserResolutionService userResolutionService;
+    private final ReceiptParsingService receiptParsingService;
+    private final ExecutorService receiptParseExecutor;
+    private final ExecutorService receiptJobPollExecutor;
+    private final long maxWaitMs;
+    private final long pollIntervalMs;
+    private final long jobLeaseMs;
+    private final Map<Long, CompletableFuture<Void>> scheduledJobs = new ConcurrentHashMap<>();
+
+    public ReceiptParseJobService(
+        ReceiptParseJobRepository receiptParseJobRepository,
+        ImageAssetRepository imageAssetRepository,
+        ReceiptRepository receiptRepository,
+        UserResolutionService userResolutionService,
+        ReceiptParsingService receiptParsingService,
+        @Qualifier("receiptParseExecutor") ExecutorService receiptParseExecutor,
+        @Qualifier("receiptJobPollExecutor") ExecutorService receiptJobPollExecutor,
+        @Value("${app.receipt.parse.max-wait-ms:25000}") long maxWaitMs,
+        @Value("${app.receipt.parse.poll-interval-ms:500}") long pollIntervalMs,
+        @Value("${app.receipt.parse.job-lease-ms:600000}") long jobLeaseMs
+    ) {
+        this.receiptParseJobRepository = receiptParseJobRepository;
+        this.imageAssetRepository = imageAssetRepository;
+        this.receiptRepository = receiptRepository;
+        this.userResolutionService = userResolutionService;
+        this.receiptParsingService = receiptParsingService;
+        this.receiptParseExecutor = receiptParseExecutor;
+        this.receiptJobPollExecutor = receiptJobPollExecutor;
+        this.maxWaitMs = Math.max(0L, maxWaitMs);
+        this.pollIntervalMs = Math.max(1L, pollIntervalMs);
+        this.jobLeaseMs = Math.max(1L, jobLeaseMs);
+    }
+
+    public ReceiptParseJobResponse enqueue(Long imageId, String principal) {
+        if (imageId == null) {
+            throw new IllegalArgumentException("imageId is required");
+        }
+
+        User user = userResolutionService.resolve(principal);
+        imageAssetRepository.findByIdAndUser(imageId, user)
+            .orElseThrow(() -> new IllegalArgumentException("Image not found"));
+
+        ReceiptParseJob job = new ReceiptParseJob();
+        job.setUser(user);
+        job.setImageAssetId(imageId);
+        job.setStatus(ReceiptParseJob.STATUS_PENDING);
+        job = receiptParseJobRepository.save(job);
+
+        if (!schedule(job.getId())) {
+            // The job stays PENDING; the sweep hands it to the pool once the queue drains.
+            log.info("Receipt parse queue is full, job {} waits for the next sweep", job.getId());
+        }
+        return toResponse(job, null);
+    }
+
+    public ReceiptParseJobResponse getJob(Long jobId, String principal) {
+        if (jobId == null) {
+            throw new IllegalArgumentException("jobId is required");
+        }
+        User user = userResolutionService.resolve(principal);
+        ReceiptParseJob job = receiptParseJobRepository.findByIdAndUser(jobId, user)
+            .orElseThrow(() -> new IllegalArgumentException("Job not found"));
+
+        ReceiptParseResponse receipt = null;
+        if (ReceiptParseJob.STATUS_SUCCEEDED.equals(job.getStatus()) && job.getReceiptId() != null) {
+            try {
+                receipt = receiptParsingService.getReceiptById(job.getReceiptId(), principal);
+            } catch (IllegalArgumentException ignored) {
+                // The receipt may have been deleted after the job finished.
+            }
+        }
+        return toResponse(job, receipt);
+    }
+
+    public CompletableFuture<ReceiptParseJobResponse> awaitJob(Long jobId, String principal, long waitMs) {
+        ReceiptParseJobResponse current = getJob(jobId, principal);
+        long boundedWaitMs = Math.min(Math.max(0L, waitMs), maxWaitMs);
+        if (boundedWaitMs == 0 || isFinished(current.getStatus())) {
+            return CompletableFuture.completedFuture(current);
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(boundedWaitMs);
+        CompletableFuture<Void> completion = scheduledJobs.get(jobId);
+        if (completion == null) {
+            // Queued for the sweep or running on another instance: re-check the row until it finishes or the wait ends.
+            return pollJob(jobId, principal, current, deadline);
+        }
+        CompletableFuture<Void> finishedOrTimedOut = completion
+            .copy()
+            .completeOnTimeout(null, boundedWaitMs, TimeUnit.MILLISECONDS);
+        // The local run also ends early when another instance claimed the job first; keep polling in that case.
+        return reread(finishedOrTimedOut, jobId, principal, current).thenCompose(job -> isFinished(job.getStatus())
+            ? CompletableFuture.completedFuture(job)
+            : pollJob(jobId, principal, job, deadline));
+    }
+
+    private CompletableFuture<ReceiptParseJobResponse> pollJob(
+        Long jobId,
+        String principal,
+        ReceiptParseJobResponse last,
+        long deadline
+    ) {
+        long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remainingMs <= 0) {
+            return CompletableFuture.completedFuture(last);
+        }
+        CompletableFuture<Void> tick = new CompletableFuture<Void>()
+            .completeOnTimeout(null, Math.min(pollIntervalMs, remainingMs), TimeUnit.MILLISECONDS);
+        return reread(tick, jobId, principal, last).thenCompose(job -> isFinished(job.getStatus())
+            ? CompletableFuture.completedFuture(job)
+            : pollJob(jobId, principal, job, deadline));
+    }
+
+    // Reads the job on the poll executor rather than the completing thread; a full poll queue answers with the last state.
+    private CompletableFuture<ReceiptParseJobResponse> reread(
+        CompletableFuture<?> trigger,
+        Long jobId,
+        String principal,
+        ReceiptParseJobResponse last
+    ) {
+        return trigger
+            .thenApplyAsync(ignored -> getJob(jobId, principal), receiptJobPollExecutor)
+            .exceptionally(ex -> {
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                if (cause instanceof RejectedExecutionException) {
+                    return last;
+                }
+                throw ex instanceof CompletionException ? (CompletionException) ex : new CompletionException(ex);
+            });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverInterruptedJobs() {
+        schedulePendingJobs();
+    }
+
+    /**
+     * A RUNNING job is only requeued once its lease has expired, so jobs still running on another
+     * instance are left alone; the attempt number fences out a worker that outlived its lease.
+     */
+    @Scheduled(
+        fixedDelayString = "${app.receipt.parse.sweep-interval-ms:30000}",
+        initialDelayString = "${app.receipt.parse.sweep-interval-ms:30000}"
+    )
+    public void schedulePendingJobs() {
+        int requeued = receiptParseJobRepository.requeueExpiredJobs(LocalDateTime.now().minusNanos(jobLeaseMs * 1_000_000L));
+        if (requeued > 0) {
+            log.info("Requeued {} receipt parse jobs whose lease expired", requeued);
+        }
+        List<Long> pendingIds = receiptParseJobRepository.findIdsByStatus(
+            ReceiptParseJob.STATUS_PENDING,
+            PageRequest.of(0, SWEEP_BATCH_SIZE)
+        );
+        for (Long jobId : pendingIds) {
+            if (scheduledJobs.containsKey(jobId)) {
+                continue;
+            }
+            if (!schedule(jobId)) {
+                break;
+            }
+        }
+    }
+
+    private boolean schedule(Long jobId) {
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        if (scheduledJobs.putIfAbsent(jobId, completion) != null) {
+            return true;
+        }
+        try {
+            receiptParseExecutor.execute(() -> runJob(jobId, completion));
+            return true;
+        } catch (RejectedExecutionException ex) {
+            scheduledJobs.remove(jobId, completion);
+            return false;
+        }
+    }
+
+    private void runJob(Long jobId, CompletableFuture<Void> completion) {
+        ReceiptParseJob job = null;
+        try {
+            if (receiptParseJobRepository.claim(jobId, LocalDateTime.now()) == 0) {
+                return;
+            }
+            job = receiptParseJobRepository.findWithUserById(jobId).orElse(null);
+            if (job == null) {
+                return;
+            }
+            execute(job);
+        } catch (RuntimeException ex) {
+            log.error("Receipt parse job {} crashed", jobId, ex);
+            if (job != null) {
+                markFailed(job, "INTERNAL_ERROR", "Receipt parsing failed");
+            }
+        } finally {
+            scheduledJobs.remove(jobId, completion);
+            completion.complete(null);
+        }
+    }
+
+    private void execute(ReceiptParseJob job) {
+        if (job.getAttempts() > 1) {
+            // A previous attempt may have saved the receipt before its worker died.
+            Receipt saved = receiptRepository
+                .findFirstByImageAssetIdAndCreatedAtGreaterThanEqualOrderByIdAsc(job.getImageAssetId(), job.getCreatedAt())
+                .orElse(null);
+            if (saved != null) {
+                markSucceeded(job, saved.getId());
+                return;
+            }
+        }
+        try {
+            ReceiptParseResponse response = receiptParsingService.parseAndSaveForUser(job.getImageAssetId(), job.getUser());
+            markSucceeded(job, response.getReceiptId());
+        } catch (DailyReceiptLimitExceededException ex) {
+            markFailed(job, "DAILY_LIMIT_EXCEEDED", ex.getMessage());
+        } catch (GeminiOverloadedException ex) {
+            markFailed(job, "PROVIDER_BUSY", ex.getMessage());
+        } catch (IllegalArgumentException ex) {
+            markFailed(job, "INVALID_REQUEST", ex.getMessage());
+        } catch (IllegalStateException | IOException ex) {
+            log.warn("Receipt parse job {} failed: {}", job.getId(), ex.getMessage());
+            markFailed(job, "EXTRACTION_FAILED", ex.getMessage());
+        }
+    }
+
+    private void markSucceeded(ReceiptParseJob job, Long receiptId) {
+        if (receiptParseJobRepository.markSucceeded(job.getId(), job.getAttempts(), receiptId, LocalDateTime.now()) == 0) {
+            log.warn("Receipt parse job {} attempt {} lost its lease before finishing", job.getId(), job.getAttempts());
+        }
+    }
+
+    private void markFailed(ReceiptParseJob job, String errorCode, String errorMessage) {
+        String message = errorMessage != null && errorMessage.length() > MAX_ERROR_MESSAGE_LENGTH
+            ? errorMessage.substring(0, MAX_ERROR_MESSAGE_LENGTH)
+            : errorMessage;
+        if (receiptParseJobRepository.markFailed(job.getId(), job.getAttempts(), errorCode, message, LocalDateTime.now()) == 0) {
+            log.warn("Receipt parse job {} attempt {} lost its lease before finishing", job.getId(), job.getAttempts());
+        }
+    }
+
+    private ReceiptParseJobResponse toResponse(ReceiptParseJob job, ReceiptParseResponse receipt) {
+        ReceiptParseJobResponse response = new ReceiptParseJobResponse();
+        response.setJobId(job.getId());
+        response.setImageId(job.getImageAssetId());
+        response.setStatus(job.getStatus());
+        response.setReceiptId(job.getReceiptId());
+        response.setErrorCode(job.getErrorCode());
+        response.setError(job.getErrorMessage());
+        response.setCreatedAt(job.getCreatedAt());
+        response.setStartedAt(job.getStartedAt());
+        response.setFinishedAt(job.getFinishedAt());
+        response.setReceipt(receipt);
+        return response;
+    }
+
+    private boolean isFinished(String status) {
+        return ReceiptParseJob.STATUS_SUCCEEDED.equals(status) || ReceiptParseJob.STATUS_FAILED.equals(status);
+    }
+}
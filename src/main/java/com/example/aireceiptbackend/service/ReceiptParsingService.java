@@ -1,34 +1,57 @@
 package com.example.aireceiptbackend.service;
 
+import com.example.aireceiptbackend.exception.GeminiOverloadedException;
 import com.example.aireceiptbackend.model.*;
 import com.example.aireceiptbackend.repository.ImageAssetRepository;
+import com.example.aireceiptbackend.repository.ReceiptItemRepository;
 import com.example.aireceiptbackend.repository.ReceiptRepository;
-import com.example.aireceiptbackend.repository.UserRepository;
+import com.example.aireceiptbackend.util.ReceiptFieldParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
-import software.amazon.awssdk.core.ResponseBytes;
+import org.springframework.transaction.support.TransactionTemplate;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.S3Exception;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
 
 @Service
 public class ReceiptParsingService {
 
+    private static final Logger log = LoggerFactory.getLogger(ReceiptParsingService.class);
+
     private static final Set<String> ALLOWED_CATEGORIES = Set.of(
         "Housing",
         "Utilities",
@@ -42,169 +65,554 @@ public class ReceiptParsingService {
         "Education"
     );
 
-    private final RestTemplate restTemplate;
+    private final ReceiptExtractor receiptExtractor;
+    private final GeminiCircuitBreaker geminiCircuitBreaker;
     private final S3Client s3Client;
     private final ObjectMapper objectMapper;
-    private final UserRepository userRepository;
+    private final UserResolutionService userResolutionService;
     private final ImageAssetRepository imageAssetRepository;
     private final ReceiptRepository receiptRepository;
+    private final ReceiptItemRepository receiptItemRepository;
     private final ReceiptUsageService receiptUsageService;
-    private final String apiKey;
-    private final String apiBase;
-    private final String model;
+    private final ReceiptSpendingRollupService receiptSpendingRollupService;
+    private final ReceiptExtractionCacheService receiptExtractionCacheService;
+    private final ReceiptImagePreprocessor receiptImagePreprocessor;
+    private final ExecutorService receiptParseExecutor;
+    private final TransactionTemplate transactionTemplate;
     private final String bucket;
     private final int dailyLimitFree;
     private final int dailyLimitPro;
+    private final int batchMaxSize;
+    private final int batchParallelism;
+    private final int listDefaultPageSize;
+    private final int listMaxPageSize;
 
     public ReceiptParsingService(
-        RestTemplate restTemplate,
+        ReceiptExtractor receiptExtractor,
+        GeminiCircuitBreaker geminiCircuitBreaker,
         S3Client s3Client,
         ObjectMapper objectMapper,
-        UserRepository userRepository,
+        UserResolutionService userResolutionService,
         ImageAssetRepository imageAssetRepository,
         ReceiptRepository receiptRepository,
+        ReceiptItemRepository receiptItemRepository,
         ReceiptUsageService receiptUsageService,
-        @Value("${gemini.api-key:}") String apiKey,
-        @Value("${gemini.api-base:https://generativelanguage.googleapis.com}") String apiBase,
-        @Value("${gemini.model:gemini-2.5-flash}") String model,
+        ReceiptSpendingRollupService receiptSpendingRollupService,
+        ReceiptExtractionCacheService receiptExtractionCacheService,
+        ReceiptImagePreprocessor receiptImagePreprocessor,
+        @Qualifier("receiptParseExecutor") ExecutorService receiptParseExecutor,
+        TransactionTemplate transactionTemplate,
         @Value("${aws.s3.bucket}") String bucket,
         @Value("${app.receipt.daily-limit-free:${app.receipt.daily-limit-normal:3}}") int dailyLimitFree,
-        @Value("${app.receipt.daily-limit-pro:100}") int dailyLimitPro
+        @Value("${app.receipt.daily-limit-pro:100}") int dailyLimitPro,
+        @Value("${app.receipt.parse.batch-max-size:50}") int batchMaxSize,
+        @Value("${app.receipt.parse.batch-parallelism:4}") int batchParallelism,
+        @Value("${app.receipt.list.default-page-size:20}") int listDefaultPageSize,
+        @Value("${app.receipt.list.max-page-size:100}") int listMaxPageSize
     ) {
-        this.restTemplate = restTemplate;
+        this.receiptExtractor = receiptExtractor;
+        this.geminiCircuitBreaker = geminiCircuitBreaker;
         this.s3Client = s3Client;
         this.objectMapper = objectMapper;
-        this.userRepository = userRepository;
+        this.userResolutionService = userResolutionService;
         this.imageAssetRepository = imageAssetRepository;
         this.receiptRepository = receiptRepository;
+        this.receiptItemRepository = receiptItemRepository;
         this.receiptUsageService = receiptUsageService;
-        this.apiKey = apiKey;
-        this.apiBase = apiBase;
-        this.model = model;
+        this.receiptSpendingRollupService = receiptSpendingRollupService;
+        this.receiptExtractionCacheService = receiptExtractionCacheService;
+        this.receiptImagePreprocessor = receiptImagePreprocessor;
+        this.receiptParseExecutor = receiptParseExecutor;
+        this.transactionTemplate = transactionTemplate;
         this.bucket = bucket;
         this.dailyLimitFree = dailyLimitFree;
         this.dailyLimitPro = dailyLimitPro;
+        this.batchMaxSize = Math.max(1, batchMaxSize);
+        this.batchParallelism = Math.max(1, batchParallelism);
+        this.listMaxPageSize = Math.max(1, listMaxPageSize);
+        this.listDefaultPageSize = Math.min(this.listMaxPageSize, Math.max(1, listDefaultPageSize));
     }
 
     public ReceiptParseResponse parseAndSaveFromImageId(Long imageId, String principal) throws IOException {
-        if (apiKey == null || apiKey.trim().isEmpty()) {
-            throw new IllegalStateException("Gemini API key is not configured");
+        return parseAndSave(imageId, userResolutionService.resolveReference(principal), resolveDailyLimit(principal), null);
+    }
+
+    public ReceiptParseResponse parseAndSaveForUser(Long imageId, User user) throws IOException {
+        return parseAndSave(imageId, user, resolveDailyLimit(user), null);
+    }
+
+    /**
+     * Same as {@link #parseAndSaveFromImageId} but reports fields and items to the listener as the
+     * model produces them. A cache hit is replayed to the listener before the receipt is saved.
+     */
+    public ReceiptParseResponse parseAndSaveFromImageIdStreaming(
+        Long imageId,
+        String principal,
+        ReceiptExtractor.PartialExtractionListener listener
+    ) throws IOException {
+        return parseAndSave(
+            imageId,
+            userResolutionService.resolveReference(principal),
+            resolveDailyLimit(principal),
+            listener
+        );
+    }
+
+    /**
+     * Runs in short phases so no connection is held across remote I/O: load the asset and reserve a
+     * slot (each its own transaction), extract with no session open (S3 + model), then persist.
+     * Must not be called from within a transaction.
+     */
+    private ReceiptParseResponse parseAndSave(
+        Long imageId,
+        User user,
+        int dailyLimit,
+        ReceiptExtractor.PartialExtractionListener listener
+    ) throws IOException {
+        if (!receiptExtractor.isConfigured()) {
+            throw new IllegalStateException("Receipt extraction provider is not configured");
         }
         if (imageId == null) {
             throw new IllegalArgumentException("imageId is required");
         }
 
-        User user = resolveUser(principal);
-        receiptUsageService.reserveDailyScanSlot(user, resolveDailyLimit(user));
-        boolean reservedScanSlot = true;
-        try {
-            ImageAsset imageAsset = imageAssetRepository.findByIdAndUser(imageId, user)
-                .orElseThrow(() -> new IllegalArgumentException("Image not found"));
+        ImageAsset imageAsset = imageAssetRepository.findByIdAndUser(imageId, user)
+            .orElseThrow(() -> new IllegalArgumentException("Image not found"));
 
-            GetObjectRequest getObjectRequest = GetObjectRequest.builder()
-                .bucket(bucket)
-                .key(imageAsset.getObjectKey())
-                .build();
+        PreparedImage image = prepareImage(imageAsset);
+        Optional<ReceiptExtraction> cached = receiptExtractionCacheService.lookup(
+            image.contentSha256,
+            receiptExtractor.getModel(),
+            cacheVersion()
+        );
+        if (cached.isPresent()) {
+            if (listener != null) {
+                ReceiptExtractor.replay(cached.get(), listener);
+            }
+            return toResponse(saveExtractedReceipt(cached.get(), imageAsset, user));
+        }
 
-            byte[] imageBytes;
+        geminiCircuitBreaker.checkAvailable();
+        receiptUsageService.reserveDailyScanSlot(user, dailyLimit);
+        try {
+            long startedAt = System.nanoTime();
+            ReceiptExtraction extraction = extractFromImage(imageAsset, image, listener);
+            long latencyMs = (System.nanoTime() - startedAt) / 1_000_000L;
+
+            Receipt saved = saveExtractedReceipt(extraction, imageAsset, user);
+            receiptExtractionCacheService.store(
+                image.contentSha256,
+                receiptExtractor.getModel(),
+                cacheVersion(),
+                saved.getRawJson(),
+                latencyMs
+            );
+            return toResponse(saved);
+        } catch (RuntimeException | IOException ex) {
             try {
-                ResponseBytes<?> objectBytes = s3Client.getObjectAsBytes(getObjectRequest);
-                imageBytes = objectBytes.asByteArray();
-            } catch (S3Exception ex) {
-                throw new IllegalArgumentException("Failed to read image from storage");
+                receiptUsageService.releaseDailyScanSlot(user, dailyLimit);
+            } catch (RuntimeException releaseEx) {
+                ex.addSuppressed(releaseEx);
             }
-            if (imageBytes == null || imageBytes.length == 0) {
-                throw new IllegalArgumentException("Stored image is empty");
+            throw ex;
+        }
+    }
+
+    /**
+     * Validates the batch and reserves one scan per owned image up front, so quota errors surface
+     * before any results are streamed. Slots for cache hits and failed items are released by
+     * {@link #runBatchParse}.
+     */
+    public BatchParse prepareBatchParse(List<Long> imageIds, String principal) {
+        if (!receiptExtractor.isConfigured()) {
+            throw new IllegalStateException("Receipt extraction provider is not configured");
+        }
+        if (imageIds == null || imageIds.isEmpty()) {
+            throw new IllegalArgumentException("imageIds is required");
+        }
+        if (imageIds.size() > batchMaxSize) {
+            throw new IllegalArgumentException(String.format("At most %d images can be parsed per batch", batchMaxSize));
+        }
+
+        Set<Long> uniqueIds = new HashSet<>();
+        for (Long imageId : imageIds) {
+            if (imageId == null) {
+                throw new IllegalArgumentException("imageIds must not contain null");
+            }
+            if (!uniqueIds.add(imageId)) {
+                throw new IllegalArgumentException("imageIds must not contain duplicates");
             }
+        }
+
+        User user = userResolutionService.resolveReference(principal);
+        Map<Long, ImageAsset> imageAssets = new HashMap<>();
+        for (ImageAsset imageAsset : imageAssetRepository.findByUserAndIdIn(user, uniqueIds)) {
+            imageAssets.put(imageAsset.getId(), imageAsset);
+        }
+
+        int dailyLimit = resolveDailyLimit(principal);
+        geminiCircuitBreaker.checkAvailable();
+        receiptUsageService.reserveDailyScanSlots(user, imageAssets.size(), dailyLimit);
+        int reservedSlots = dailyLimit < 0 ? 0 : imageAssets.size();
+        return new BatchParse(user, new ArrayList<>(imageIds), imageAssets, dailyLimit, reservedSlots);
+    }
 
-            String mimeType = trimToNull(imageAsset.getContentType());
-            if (mimeType == null) {
-                mimeType = "image/jpeg";
+    /**
+     * Extracts every image of a prepared batch with at most {@code batch-parallelism} items in flight,
+     * then persists all extracted receipts in one transaction. Results are reported to the listener
+     * from the calling thread only, in completion order.
+     */
+    public void runBatchParse(BatchParse batch, Consumer<ReceiptBatchParseItemResponse> listener) {
+        List<BatchItemResult> extracted = new ArrayList<>();
+        Map<Integer, Future<BatchItemResult>> pending = new HashMap<>();
+        boolean[] reported = new boolean[batch.imageIds.size()];
+        try {
+            CompletionService<BatchItemResult> completionService = new ExecutorCompletionService<>(receiptParseExecutor);
+            int inFlight = 0;
+            int next = 0;
+            while (next < batch.imageIds.size() || inFlight > 0) {
+                while (inFlight < batchParallelism && next < batch.imageIds.size()) {
+                    int index = next++;
+                    Long imageId = batch.imageIds.get(index);
+                    ImageAsset imageAsset = batch.imageAssets.get(imageId);
+                    if (imageAsset == null) {
+                        reported[index] = true;
+                        listener.accept(batchFailure(index, imageId, "Image not found"));
+                        continue;
+                    }
+                    try {
+                        pending.put(index, completionService.submit(() -> extractBatchItem(index, imageAsset, batch.user)));
+                        inFlight++;
+                    } catch (RejectedExecutionException ex) {
+                        reported[index] = true;
+                        listener.accept(batchFailure(index, imageId, "Receipt parse queue is full"));
+                    }
+                }
+                if (inFlight == 0) {
+                    continue;
+                }
+
+                BatchItemResult result = completionService.take().get();
+                inFlight--;
+                pending.remove(result.index);
+                reported[result.index] = true;
+                if (result.error != null) {
+                    listener.accept(batchFailure(result.index, result.imageId, result.error));
+                    continue;
+                }
+                extracted.add(result);
+                ReceiptBatchParseItemResponse item = new ReceiptBatchParseItemResponse(
+                    result.index,
+                    result.imageId,
+                    ReceiptBatchParseItemResponse.STATUS_EXTRACTED
+                );
+                item.setReceipt(toResponse(result.receipt));
+                listener.accept(item);
             }
-            String base64 = Base64.getEncoder().encodeToString(imageBytes);
-
-            String prompt = "Extract receipt data and return JSON only. " +
-                "Use ISO-8601 date (YYYY-MM-DD). Include items with description, quantity, unitPrice, totalPrice, category(Housing, Utilities, Food, Transportation, Shopping, Health, Entertainment, Subscriptions, Travel, Education).";
-
-        // String prompt = """
-        //     Extract receipt data and return ONE valid JSON object only.
-        //     Use ISO-8601 date (YYYY-MM-DD).
-        //     Include items with subtotal, tax, total, and category if possible.
-        //     JSON schema:
-        //     {
-        //     "receiptId": number | null,
-        //     "merchantName": string,
-        //     "receiptDate": string,
-        //     "currency": string,
-        //     "imageUrl": string | null,
-        //     "subtotal": number | null,
-        //     "tax": number | null,
-        //     "total": number | null,
-        //     "category": "Housing" | "Utilities" | "Food" | "Transportation" |
-        //                 "Shopping" | "Health" | "Entertainment" |
-        //                 "Subscriptions" | "Travel" | "Education" | "Other",
-        //     "items": [
-        //         {
-        //         "description": string,
-        //         "quantity": number | null,
-        //         "unitPrice": number | null,
-        //         "totalPrice": number | null
-        //         }
-        //     ]
-        //     }
-        //     """;
-
-
-
-
-            Map<String, Object> requestBody = buildRequestBody(prompt, mimeType, base64);
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("x-goog-api-key", apiKey);
-
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
-            String url = String.format("%s/v1beta/models/%s:generateContent", apiBase, model);
-            ResponseEntity<String> response;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            abortBatch(batch, pending, reported, "Batch parse was interrupted", listener);
+        } catch (ExecutionException ex) {
+            log.error("Batch parse task failed unexpectedly", ex);
+            abortBatch(batch, pending, reported, "Batch parse failed", listener);
+        } finally {
+            int geminiSaved = persistBatch(batch, extracted, listener);
+            int unused = batch.reservedSlots - Math.min(batch.reservedSlots, geminiSaved);
             try {
-                response = restTemplate.exchange(url, HttpMethod.POST, entity, String.class);
-            } catch (RestClientException ex) {
-                throw new IllegalStateException("Gemini API request failed");
+                receiptUsageService.releaseDailyScanSlots(batch.user, unused, batch.dailyLimit);
+            } catch (RuntimeException ex) {
+                log.warn("Failed to release {} unused scan slots for user {}", unused, batch.user.getId(), ex);
             }
+        }
+    }
 
-            ReceiptExtraction extraction = parseExtraction(response.getBody());
-            Receipt receipt = mapToReceipt(extraction, user);
-            receipt.setImageAsset(imageAsset);
-            receipt.setImageUrl(buildStorageUrl(imageAsset.getObjectKey()));
-            receipt.setIsReviewed(false);
-            receipt.setRawJson(extraction != null ? safeToJson(extraction) : null);
-            Receipt saved = receiptRepository.save(receipt);
+    // Results not yet taken from the completion service are reported as failed and never persisted, so their slots are released.
+    private void abortBatch(
+        BatchParse batch,
+        Map<Integer, Future<BatchItemResult>> pending,
+        boolean[] reported,
+        String error,
+        Consumer<ReceiptBatchParseItemResponse> listener
+    ) {
+        for (Future<BatchItemResult> future : pending.values()) {
+            future.cancel(true);
+        }
+        for (int index = 0; index < reported.length; index++) {
+            if (!reported[index]) {
+                listener.accept(batchFailure(index, batch.imageIds.get(index), error));
+            }
+        }
+    }
 
-            return toResponse(saved);
-        } catch (RuntimeException | IOException ex) {
-            if (reservedScanSlot) {
-                try {
-                    receiptUsageService.releaseDailyScanSlot(user);
-                } catch (RuntimeException releaseEx) {
-                    ex.addSuppressed(releaseEx);
+    private BatchItemResult extractBatchItem(int index, ImageAsset imageAsset, User user) {
+        BatchItemResult result = new BatchItemResult(index, imageAsset.getId());
+        try {
+            PreparedImage image = prepareImage(imageAsset);
+            result.contentSha256 = image.contentSha256;
+            Optional<ReceiptExtraction> cached = receiptExtractionCacheService.lookup(
+                result.contentSha256,
+                receiptExtractor.getModel(),
+                cacheVersion()
+            );
+            if (cached.isPresent()) {
+                result.cacheHit = true;
+                result.receipt = buildReceipt(cached.get(), imageAsset, user);
+                return result;
+            }
+
+            long startedAt = System.nanoTime();
+            ReceiptExtraction extraction = extractFromImage(imageAsset, image, null);
+            result.latencyMs = (System.nanoTime() - startedAt) / 1_000_000L;
+            result.receipt = buildReceipt(extraction, imageAsset, user);
+        } catch (IllegalArgumentException | IllegalStateException | GeminiOverloadedException ex) {
+            result.error = ex.getMessage();
+        } catch (IOException | RuntimeException ex) {
+            log.warn("Batch extraction failed for image {}", imageAsset.getId(), ex);
+            result.error = "Receipt extraction failed";
+        }
+        return result;
+    }
+
+    private int persistBatch(
+        BatchParse batch,
+        List<BatchItemResult> extracted,
+        Consumer<ReceiptBatchParseItemResponse> listener
+    ) {
+        if (extracted.isEmpty()) {
+            return 0;
+        }
+
+        List<Receipt> receipts = new ArrayList<>();
+        for (BatchItemResult result : extracted) {
+            receipts.add(result.receipt);
+        }
+        List<Receipt> saved;
+        try {
+            saved = transactionTemplate.execute(status -> {
+                List<Receipt> persisted = receiptRepository.saveAll(receipts);
+                for (Receipt receipt : persisted) {
+                    receiptSpendingRollupService.applyChange(null, receiptSpendingRollupService.snapshot(receipt));
                 }
+                return persisted;
+            });
+        } catch (RuntimeException ex) {
+            log.error("Failed to save batch of {} receipts for user {}", receipts.size(), batch.user.getId(), ex);
+            for (BatchItemResult result : extracted) {
+                listener.accept(batchFailure(result.index, result.imageId, "Failed to save receipt"));
             }
-            throw ex;
+            return 0;
+        }
+
+        int geminiSaved = 0;
+        for (int i = 0; i < extracted.size(); i++) {
+            BatchItemResult result = extracted.get(i);
+            Receipt receipt = saved.get(i);
+            if (!result.cacheHit) {
+                geminiSaved++;
+                receiptExtractionCacheService.store(
+                    result.contentSha256,
+                    receiptExtractor.getModel(),
+                    cacheVersion(),
+                    receipt.getRawJson(),
+                    result.latencyMs
+                );
+            }
+            ReceiptBatchParseItemResponse item = new ReceiptBatchParseItemResponse(
+                result.index,
+                result.imageId,
+                ReceiptBatchParseItemResponse.STATUS_SAVED
+            );
+            item.setReceipt(toResponse(receipt));
+            listener.accept(item);
         }
+        return geminiSaved;
     }
 
-    public List<ReceiptParseResponse> getReceiptsByUserEmail(String email) {
-        User user = resolveUser(email);
-
-        List<Receipt> receipts = receiptRepository.findByUser(user);
-        receipts.sort(
-            Comparator.comparing(
-                Receipt::getCreatedAt,
-                Comparator.nullsLast(Comparator.reverseOrder())
-            ).thenComparing(
-                Receipt::getId,
-                Comparator.nullsLast(Comparator.reverseOrder())
-            )
+    private ReceiptBatchParseItemResponse batchFailure(int index, Long imageId, String error) {
+        ReceiptBatchParseItemResponse item = new ReceiptBatchParseItemResponse(
+            index,
+            imageId,
+            ReceiptBatchParseItemResponse.STATUS_FAILED
         );
+        item.setError(error);
+        return item;
+    }
+
+    private Receipt saveExtractedReceipt(ReceiptExtraction extraction, ImageAsset imageAsset, User user) {
+        Receipt receipt = buildReceipt(extraction, imageAsset, user);
+        return transactionTemplate.execute(status -> {
+            Receipt saved = receiptRepository.save(receipt);
+            receiptSpendingRollupService.applyChange(null, receiptSpendingRollupService.snapshot(saved));
+            return saved;
+        });
+    }
+
+    private Receipt buildReceipt(ReceiptExtraction extraction, ImageAsset imageAsset, User user) {
+        Receipt receipt = mapToReceipt(extraction, user);
+        receipt.setImageAsset(imageAsset);
+        receipt.setImageUrl(buildStorageUrl(imageAsset.getObjectKey()));
+        receipt.setIsReviewed(false);
+        receipt.setRawJson(extraction != null ? safeToJson(extraction) : null);
+        return receipt;
+    }
+
+    /**
+     * Reads the original at most once before extraction: when it has to be preprocessed, the content
+     * digest for the extraction cache is taken from the same stream instead of a separate S3 GET.
+     */
+    private PreparedImage prepareImage(ImageAsset imageAsset) throws IOException {
+        boolean cacheEnabled = receiptExtractionCacheService.isEnabled();
+        byte[] processed = null;
+        if (receiptImagePreprocessor.isEnabled()) {
+            String derivedKey = receiptImagePreprocessor.derivedObjectKey(imageAsset.getObjectKey());
+            if (!derivedKey.equals(imageAsset.getProcessedObjectKey())) {
+                processed = preprocessImage(imageAsset, derivedKey, cacheEnabled).orElse(null);
+            }
+        }
+        String contentSha256 = cacheEnabled ? resolveContentSha256(imageAsset) : null;
+        return new PreparedImage(contentSha256, processed);
+    }
+
+    // Cached extractions are only reused for the same prompt and the same preprocessing output.
+    private String cacheVersion() {
+        return receiptExtractor.getPromptVersion() + "+" + receiptImagePreprocessor.variant();
+    }
+
+    private ReceiptExtraction extractFromImage(
+        ImageAsset imageAsset,
+        PreparedImage image,
+        ReceiptExtractor.PartialExtractionListener listener
+    ) throws IOException {
+        if (image.processed != null) {
+            return extract(
+                ReceiptImagePreprocessor.OUTPUT_CONTENT_TYPE,
+                () -> new ByteArrayInputStream(image.processed),
+                listener
+            );
+        }
+        if (receiptImagePreprocessor.isEnabled()) {
+            String derivedKey = receiptImagePreprocessor.derivedObjectKey(imageAsset.getObjectKey());
+            if (derivedKey.equals(imageAsset.getProcessedObjectKey())) {
+                return extract(
+                    ReceiptImagePreprocessor.OUTPUT_CONTENT_TYPE,
+                    () -> openObject(derivedKey),
+                    listener
+                );
+            }
+        }
+
+        String mimeType = trimToNull(imageAsset.getContentType());
+        if (mimeType == null) {
+            mimeType = "image/jpeg";
+        }
+        return extract(mimeType, () -> {
+            ResponseInputStream<GetObjectResponse> imageStream = openObject(imageAsset.getObjectKey());
+            Long contentLength = imageStream.response().contentLength();
+            if (contentLength != null && contentLength == 0) {
+                imageStream.close();
+                throw new IllegalArgumentException("Stored image is empty");
+            }
+            return imageStream;
+        }, listener);
+    }
+
+    private ReceiptExtraction extract(
+        String mimeType,
+        ReceiptExtractor.ImageSource image,
+        ReceiptExtractor.PartialExtractionListener listener
+    ) throws IOException {
+        if (listener == null) {
+            return receiptExtractor.extractReceipt(mimeType, image);
+        }
+        return receiptExtractor.extractReceiptStreaming(mimeType, image, listener);
+    }
+
+    private Optional<byte[]> preprocessImage(ImageAsset imageAsset, String derivedKey, boolean digestSource) throws IOException {
+        MessageDigest digest = digestSource && trimToNull(imageAsset.getContentSha256()) == null ? sha256() : null;
+        Optional<byte[]> processed;
+        try (ResponseInputStream<GetObjectResponse> imageStream = openObject(imageAsset.getObjectKey())) {
+            InputStream source = digest != null ? new DigestInputStream(imageStream, digest) : imageStream;
+            processed = receiptImagePreprocessor.preprocess(source, imageStream.response().contentLength());
+            if (digest != null) {
+                // The decoder may stop before the end of the file; the digest must cover all of it.
+                source.transferTo(OutputStream.nullOutputStream());
+                saveContentSha256(imageAsset, digest);
+            }
+        } catch (IOException | RuntimeException ex) {
+            if (ex instanceof IllegalArgumentException) {
+                throw ex;
+            }
+            log.warn("Preprocessing failed for image {}, sending original", imageAsset.getId(), ex);
+            return Optional.empty();
+        }
+        if (processed.isEmpty()) {
+            return processed;
+        }
+
+        PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+            .bucket(bucket)
+            .key(derivedKey)
+            .contentType(ReceiptImagePreprocessor.OUTPUT_CONTENT_TYPE)
+            .build();
+        try {
+            s3Client.putObject(putObjectRequest, RequestBody.fromBytes(processed.get()));
+            imageAsset.setProcessedObjectKey(derivedKey);
+            imageAssetRepository.updateProcessedObjectKey(imageAsset.getId(), derivedKey);
+        } catch (S3Exception ex) {
+            log.warn("Failed to cache preprocessed image {} in storage", imageAsset.getId(), ex);
+        }
+        return processed;
+    }
+
+    private ResponseInputStream<GetObjectResponse> openObject(String objectKey) {
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+            .bucket(bucket)
+            .key(objectKey)
+            .build();
+        try {
+            return s3Client.getObject(getObjectRequest);
+        } catch (S3Exception ex) {
+            throw new IllegalArgumentException("Failed to read image from storage");
+        }
+    }
+
+    private String resolveContentSha256(ImageAsset imageAsset) throws IOException {
+        String existing = trimToNull(imageAsset.getContentSha256());
+        if (existing != null) {
+            return existing;
+        }
+
+        // Only reached when the original was not read for preprocessing (preprocessing off, derived image already stored).
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[8192];
+        try (ResponseInputStream<GetObjectResponse> imageStream = openObject(imageAsset.getObjectKey())) {
+            int read;
+            while ((read = imageStream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return saveContentSha256(imageAsset, digest);
+    }
+
+    private String saveContentSha256(ImageAsset imageAsset, MessageDigest digest) {
+        String contentSha256 = HexFormat.of().formatHex(digest.digest());
+        imageAsset.setContentSha256(contentSha256);
+        imageAssetRepository.updateContentSha256(imageAsset.getId(), contentSha256);
+        return contentSha256;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    public List<ReceiptParseResponse> getReceiptsByUserEmail(String email) {
+        User user = userResolutionService.resolveReference(email);
+
+        List<Receipt> receipts = receiptRepository.findWithDetailsByUser(user);
 
         List<ReceiptParseResponse> responses = new ArrayList<>();
         for (Receipt receipt : receipts) {
@@ -213,37 +621,112 @@ public class ReceiptParsingService {
         return responses;
     }
 
+    /**
+     * Keyset page of the user's receipts, newest first. The cursor encodes the (createdAt, id) of the
+     * last row returned, so each page is an index range scan regardless of how deep the client pages.
+     */
+    public ReceiptPageResponse getReceiptPage(String principal, Integer limit, String cursor, boolean includeItems) {
+        User user = userResolutionService.resolveReference(principal);
+        int pageSize = limit == null ? listDefaultPageSize : limit;
+        if (pageSize < 1 || pageSize > listMaxPageSize) {
+            throw new IllegalArgumentException(String.format("limit must be between 1 and %d", listMaxPageSize));
+        }
+
+        Pageable pageable = PageRequest.of(0, pageSize + 1);
+        String after = trimToNull(cursor);
+        List<ReceiptListRow> rows;
+        if (after == null) {
+            rows = receiptRepository.findListRowsByUser(user, pageable);
+        } else {
+            ReceiptListRow position = decodeCursor(after);
+            rows = receiptRepository.findListRowsByUserBefore(user, position.getCreatedAt(), position.getId(), pageable);
+        }
+
+        boolean hasMore = rows.size() > pageSize;
+        if (hasMore) {
+            rows = rows.subList(0, pageSize);
+        }
+
+        Map<Long, List<ReceiptParseResponse.ReceiptParseItem>> itemsByReceipt = new HashMap<>();
+        if (includeItems && !rows.isEmpty()) {
+            List<Long> receiptIds = new ArrayList<>();
+            for (ReceiptListRow row : rows) {
+                receiptIds.add(row.getId());
+            }
+            for (ReceiptItem item : receiptItemRepository.findByReceiptIds(receiptIds)) {
+                itemsByReceipt.computeIfAbsent(item.getReceipt().getId(), id -> new ArrayList<>()).add(toItemResponse(item));
+            }
+        }
+
+        List<ReceiptParseResponse> receipts = new ArrayList<>();
+        for (ReceiptListRow row : rows) {
+            ReceiptParseResponse response = new ReceiptParseResponse();
+            response.setReceiptId(row.getId());
+            response.setMerchantName(row.getMerchantName());
+            response.setReceiptDate(row.getReceiptDate());
+            response.setCurrency(row.getCurrency());
+            response.setCategory(row.getCategory());
+            response.setImageId(row.getImageAssetId());
+            response.setImageUrl(row.getImageUrl());
+            response.setReviewed(Boolean.TRUE.equals(row.getReviewed()));
+            response.setSubtotal(row.getSubtotalAmount());
+            response.setTax(row.getTaxAmount());
+            response.setTotal(row.getTotalAmount());
+            if (includeItems) {
+                response.setItems(itemsByReceipt.getOrDefault(row.getId(), new ArrayList<>()));
+            }
+            receipts.add(response);
+        }
+
+        String nextCursor = null;
+        if (hasMore) {
+            nextCursor = encodeCursor(rows.get(rows.size() - 1));
+        }
+        return new ReceiptPageResponse(receipts, nextCursor, hasMore);
+    }
+
+    private String encodeCursor(ReceiptListRow row) {
+        String position = row.getCreatedAt() + "," + row.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private ReceiptListRow decodeCursor(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.lastIndexOf(',');
+            LocalDateTime createdAt = LocalDateTime.parse(position.substring(0, separator));
+            Long id = Long.valueOf(position.substring(separator + 1));
+            return new ReceiptListRow(id, null, null, null, null, null, null, null, null, null, null, createdAt);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException ex) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
     public ReceiptStatsResponse getMonthlyStats(String principal) {
-        User user = resolveUser(principal);
+        User user = userResolutionService.resolveReference(principal);
         LocalDate monthStart = LocalDate.now().withDayOfMonth(1);
-        LocalDate monthEnd = monthStart.plusMonths(1).minusDays(1);
 
-        BigDecimal totalSpent = receiptRepository.sumTotalAmountByUserAndReceiptDateBetween(user, monthStart, monthEnd);
-        long count = receiptRepository.countByUserAndReceiptDateGreaterThanEqualAndReceiptDateLessThanEqual(user, monthStart, monthEnd);
+        BigDecimal totalSpent = BigDecimal.ZERO;
+        long count = 0;
+        for (ReceiptSpendingRollup rollup : receiptSpendingRollupService.getMonth(user, monthStart)) {
+            totalSpent = totalSpent.add(rollup.getTotalAmount());
+            count += rollup.getReceiptCount();
+        }
 
         ReceiptStatsResponse response = new ReceiptStatsResponse();
-        response.setTotalSpentThisMonth(totalSpent != null ? totalSpent : BigDecimal.ZERO);
+        response.setTotalSpentThisMonth(totalSpent);
         response.setReceiptsProcessedThisMonth(count);
         return response;
     }
 
     public CategorySpendingStatsResponse getMonthlySpendingByCategory(String principal) {
-        User user = resolveUser(principal);
+        User user = userResolutionService.resolveReference(principal);
         LocalDate monthStart = LocalDate.now().withDayOfMonth(1);
         LocalDate monthEnd = monthStart.plusMonths(1).minusDays(1);
 
-        List<Receipt> receipts = receiptRepository
-            .findByUserAndReceiptDateGreaterThanEqualAndReceiptDateLessThanEqualOrderByReceiptDateDesc(
-                user,
-                monthStart,
-                monthEnd
-            );
-
         Map<String, BigDecimal> categoryTotals = new HashMap<>();
-        for (Receipt receipt : receipts) {
-            String category = normalizeCategoryForStats(receipt.getCategory());
-            BigDecimal amount = receipt.getTotalAmount() != null ? receipt.getTotalAmount() : BigDecimal.ZERO;
-            categoryTotals.merge(category, amount, BigDecimal::add);
+        for (ReceiptSpendingRollup rollup : receiptSpendingRollupService.getMonth(user, monthStart)) {
+            categoryTotals.merge(rollup.getCategory(), rollup.getTotalAmount(), BigDecimal::add);
         }
 
         List<CategorySpendingStatsResponse.CategorySpending> categories = new ArrayList<>();
@@ -272,6 +755,7 @@ public class ReceiptParsingService {
         return response;
     }
 
+    @Transactional
     public ReceiptParseResponse updateReviewStatus(Long receiptId, Boolean reviewed, String principal) {
         if (receiptId == null) {
             throw new IllegalArgumentException("receiptId is required");
@@ -280,8 +764,8 @@ public class ReceiptParsingService {
             throw new IllegalArgumentException("reviewed is required");
         }
 
-        User user = resolveUser(principal);
-        Receipt receipt = receiptRepository.findByIdAndUser(receiptId, user)
+        User user = userResolutionService.resolveReference(principal);
+        Receipt receipt = receiptRepository.findWithDetailsByIdAndUser(receiptId, user)
             .orElseThrow(() -> new IllegalArgumentException("Receipt not found"));
 
         receipt.setIsReviewed(reviewed);
@@ -293,12 +777,13 @@ public class ReceiptParsingService {
         if (receiptId == null) {
             throw new IllegalArgumentException("receiptId is required");
         }
-        User user = resolveUser(principal);
-        Receipt receipt = receiptRepository.findByIdAndUser(receiptId, user)
+        User user = userResolutionService.resolveReference(principal);
+        Receipt receipt = receiptRepository.findWithDetailsByIdAndUser(receiptId, user)
             .orElseThrow(() -> new IllegalArgumentException("Receipt not found"));
         return toResponse(receipt);
     }
 
+    @Transactional
     public ReceiptParseResponse updateReceiptDetails(Long receiptId, ReceiptUpdateRequest request, String principal) {
         if (receiptId == null) {
             throw new IllegalArgumentException("receiptId is required");
@@ -306,9 +791,10 @@ public class ReceiptParsingService {
         if (request == null) {
             throw new IllegalArgumentException("request is required");
         }
-        User user = resolveUser(principal);
+        User user = userResolutionService.resolveReference(principal);
         Receipt receipt = receiptRepository.findByIdAndUser(receiptId, user)
             .orElseThrow(() -> new IllegalArgumentException("Receipt not found"));
+        ReceiptSpendingRollupService.Snapshot before = receiptSpendingRollupService.snapshot(receipt);
 
         if (request.getMerchantName() != null) {
             receipt.setMerchantName(trimToNull(request.getMerchantName()));
@@ -349,6 +835,7 @@ public class ReceiptParsingService {
         }
 
         Receipt saved = receiptRepository.save(receipt);
+        receiptSpendingRollupService.applyChange(before, receiptSpendingRollupService.snapshot(saved));
         return toResponse(saved);
     }
 
@@ -358,11 +845,12 @@ public class ReceiptParsingService {
             throw new IllegalArgumentException("receiptId is required");
         }
 
-        User user = resolveUser(principal);
+        User user = userResolutionService.resolveReference(principal);
         Receipt receipt = receiptRepository.findByIdAndUser(receiptId, user)
             .orElseThrow(() -> new IllegalArgumentException("Receipt not found"));
 
         ImageAsset imageAsset = receipt.getImageAsset();
+        receiptSpendingRollupService.applyChange(receiptSpendingRollupService.snapshot(receipt), null);
         receiptRepository.delete(receipt);
         cleanupOrphanImageAssets(Collections.singletonList(imageAsset));
         return new ReceiptDeleteResponse(1, Collections.singletonList(receiptId));
@@ -382,7 +870,7 @@ public class ReceiptParsingService {
             uniqueIds.add(id);
         }
 
-        User user = resolveUser(principal);
+        User user = userResolutionService.resolveReference(principal);
         List<Receipt> receipts = receiptRepository.findByIdInAndUser(uniqueIds, user);
 
         Set<Long> foundIds = new HashSet<>();
@@ -403,6 +891,7 @@ public class ReceiptParsingService {
         List<ImageAsset> imageAssets = new ArrayList<>();
         for (Receipt receipt : receipts) {
             imageAssets.add(receipt.getImageAsset());
+            receiptSpendingRollupService.applyChange(receiptSpendingRollupService.snapshot(receipt), null);
         }
 
         receiptRepository.deleteAll(receipts);
@@ -435,6 +924,10 @@ public class ReceiptParsingService {
                 .build();
             try {
                 s3Client.deleteObject(deleteObjectRequest);
+                String processedObjectKey = trimToNull(imageAsset.getProcessedObjectKey());
+                if (processedObjectKey != null) {
+                    s3Client.deleteObject(DeleteObjectRequest.builder().bucket(bucket).key(processedObjectKey).build());
+                }
             } catch (S3Exception ex) {
                 throw new IllegalStateException("Failed to delete image from storage");
             }
@@ -451,13 +944,8 @@ public class ReceiptParsingService {
             throw new IllegalArgumentException("end must be on or after start");
         }
 
-        User user = resolveUser(principal);
-        List<Receipt> receipts = receiptRepository
-            .findByUserAndReceiptDateGreaterThanEqualAndReceiptDateLessThanEqualOrderByReceiptDateDesc(
-                user,
-                startDate,
-                endDate
-            );
+        User user = userResolutionService.resolveReference(principal);
+        List<Receipt> receipts = receiptRepository.findWithDetailsByUserAndReceiptDateBetween(user, startDate, endDate);
 
         List<ReceiptParseResponse> responses = new ArrayList<>();
         for (Receipt receipt : receipts) {
@@ -466,87 +954,6 @@ public class ReceiptParsingService {
         return responses;
     }
 
-    private Map<String, Object> buildRequestBody(String prompt, String mimeType, String base64) {
-        Map<String, Object> inlineData = new HashMap<>();
-        inlineData.put("mime_type", mimeType);
-        inlineData.put("data", base64);
-
-        Map<String, Object> imagePart = new HashMap<>();
-        imagePart.put("inline_data", inlineData);
-
-        Map<String, Object> textPart = new HashMap<>();
-        textPart.put("text", prompt);
-
-        Map<String, Object> content = new HashMap<>();
-        content.put("parts", Arrays.asList(textPart, imagePart));
-
-        Map<String, Object> schema = new HashMap<>();
-        schema.put("type", "object");
-        Map<String, Object> properties = new HashMap<>();
-        properties.put("merchantName", mapSchemaType("string"));
-        properties.put("receiptDate", mapSchemaType("string"));
-        properties.put("currency", mapSchemaType("string"));
-        properties.put("category", mapSchemaType("string"));
-        properties.put("subtotal", mapSchemaType("string"));
-        properties.put("tax", mapSchemaType("string"));
-        properties.put("total", mapSchemaType("string"));
-        Map<String, Object> itemSchema = new HashMap<>();
-        itemSchema.put("type", "object");
-        Map<String, Object> itemProps = new HashMap<>();
-        itemProps.put("description", mapSchemaType("string"));
-        itemProps.put("quantity", mapSchemaType("string"));
-        itemProps.put("unitPrice", mapSchemaType("string"));
-        itemProps.put("totalPrice", mapSchemaType("string"));
-        itemSchema.put("properties", itemProps);
-        Map<String, Object> itemsArray = new HashMap<>();
-        itemsArray.put("type", "array");
-        itemsArray.put("items", itemSchema);
-        properties.put("items", itemsArray);
-        schema.put("properties", properties);
-
-        Map<String, Object> generationConfig = new HashMap<>();
-        generationConfig.put("responseMimeType", "application/json");
-        generationConfig.put("responseSchema", schema);
-
-        Map<String, Object> body = new HashMap<>();
-        body.put("contents", Collections.singletonList(content));
-        body.put("generationConfig", generationConfig);
-        return body;
-    }
-
-    private Map<String, Object> mapSchemaType(String type) {
-        Map<String, Object> schema = new HashMap<>();
-        schema.put("type", type);
-        return schema;
-    }
-
-    private ReceiptExtraction parseExtraction(String responseBody) throws JsonProcessingException {
-        if (responseBody == null || responseBody.trim().isEmpty()) {
-            throw new IllegalStateException("Empty response from Gemini");
-        }
-
-        JsonNode root = objectMapper.readTree(responseBody);
-        JsonNode textNode = root.path("candidates").path(0).path("content").path("parts").path(0).path("text");
-        if (textNode.isMissingNode()) {
-            throw new IllegalStateException("No text response from Gemini");
-        }
-
-        String jsonText = extractJson(textNode.asText());
-        return objectMapper.readValue(jsonText, ReceiptExtraction.class);
-    }
-
-    private String extractJson(String text) {
-        if (text == null) {
-            return null;
-        }
-        int start = text.indexOf('{');
-        int end = text.lastIndexOf('}');
-        if (start >= 0 && end > start) {
-            return text.substring(start, end + 1);
-        }
-        return text.trim();
-    }
-
     private Receipt mapToReceipt(ReceiptExtraction extraction, User user) {
         Receipt receipt = new Receipt();
         receipt.setUser(user);
@@ -556,18 +963,20 @@ public class ReceiptParsingService {
         receipt.setMerchantName(trimToNull(extraction.getMerchantName()));
         receipt.setCurrency(normalizeCurrency(extraction.getCurrency()));
         receipt.setCategory(normalizeCategory(extraction.getCategory()));
-        receipt.setReceiptDate(parseDate(extraction.getReceiptDate()));
-        receipt.setSubtotalAmount(parseAmount(extraction.getSubtotal()));
-        receipt.setTaxAmount(parseAmount(extraction.getTax()));
-        receipt.setTotalAmount(parseAmount(extraction.getTotal()));
+        receipt.setReceiptDate(ReceiptFieldParser.parseDate(extraction.getReceiptDate()));
+        receipt.setSubtotalAmount(ReceiptFieldParser.parseAmount(extraction.getSubtotal()));
+        receipt.setTaxAmount(ReceiptFieldParser.parseAmount(extraction.getTax()));
+        receipt.setTotalAmount(ReceiptFieldParser.parseAmount(extraction.getTotal()));
+        receipt.setExtractionModel(extraction.getExtractionModel());
+        receipt.setExtractionTier(extraction.getExtractionTier());
 
         if (extraction.getItems() != null) {
             for (ReceiptItemExtraction itemExtraction : extraction.getItems()) {
                 ReceiptItem item = new ReceiptItem();
                 item.setDescription(trimToNull(itemExtraction.getDescription()));
-                item.setQuantity(parseAmount(itemExtraction.getQuantity()));
-                item.setUnitPrice(parseAmount(itemExtraction.getUnitPrice()));
-                item.setTotalPrice(parseAmount(itemExtraction.getTotalPrice()));
+                item.setQuantity(ReceiptFieldParser.parseAmount(itemExtraction.getQuantity()));
+                item.setUnitPrice(ReceiptFieldParser.parseAmount(itemExtraction.getUnitPrice()));
+                item.setTotalPrice(ReceiptFieldParser.parseAmount(itemExtraction.getTotalPrice()));
                 receipt.addItem(item);
             }
         }
@@ -590,18 +999,22 @@ public class ReceiptParsingService {
         if (receipt.getItems() != null) {
             List<ReceiptParseResponse.ReceiptParseItem> items = new ArrayList<>();
             for (ReceiptItem item : receipt.getItems()) {
-                ReceiptParseResponse.ReceiptParseItem respItem = new ReceiptParseResponse.ReceiptParseItem();
-                respItem.setDescription(item.getDescription());
-                respItem.setQuantity(item.getQuantity());
-                respItem.setUnitPrice(item.getUnitPrice());
-                respItem.setTotalPrice(item.getTotalPrice());
-                items.add(respItem);
+                items.add(toItemResponse(item));
             }
             response.setItems(items);
         }
         return response;
     }
 
+    private ReceiptParseResponse.ReceiptParseItem toItemResponse(ReceiptItem item) {
+        ReceiptParseResponse.ReceiptParseItem respItem = new ReceiptParseResponse.ReceiptParseItem();
+        respItem.setDescription(item.getDescription());
+        respItem.setQuantity(item.getQuantity());
+        respItem.setUnitPrice(item.getUnitPrice());
+        respItem.setTotalPrice(item.getTotalPrice());
+        return respItem;
+    }
+
     private String trimToNull(String value) {
         if (value == null) {
             return null;
@@ -628,42 +1041,6 @@ public class ReceiptParsingService {
         return "Other";
     }
 
-    private String normalizeCategoryForStats(String category) {
-        String normalized = trimToNull(category);
-        return normalized != null ? normalized : "Other";
-    }
-
-    private LocalDate parseDate(String value) {
-        if (value == null || value.trim().isEmpty()) {
-            return null;
-        }
-        try {
-            return LocalDate.parse(value.trim());
-        } catch (DateTimeParseException ignored) {
-            try {
-                LocalDateTime dateTime = LocalDateTime.parse(value.trim());
-                return dateTime.toLocalDate();
-            } catch (DateTimeParseException ignoredAgain) {
-                return null;
-            }
-        }
-    }
-
-    private BigDecimal parseAmount(String value) {
-        if (value == null || value.trim().isEmpty()) {
-            return null;
-        }
-        String cleaned = value.replaceAll("[^0-9.\\-]", "");
-        if (cleaned.isEmpty() || "-".equals(cleaned) || ".".equals(cleaned)) {
-            return null;
-        }
-        try {
-            return new BigDecimal(cleaned);
-        } catch (NumberFormatException ex) {
-            return null;
-        }
-    }
-
     private String safeToJson(ReceiptExtraction extraction) {
         try {
             return objectMapper.writeValueAsString(extraction);
@@ -672,34 +1049,82 @@ public class ReceiptParsingService {
         }
     }
 
-    private User resolveUser(String principal) {
-        String normalized = trimToNull(principal);
-        if (normalized == null || "anonymousUser".equals(normalized)) {
-            throw new IllegalArgumentException("Unauthorized");
-        }
-        return userRepository.findByEmail(normalized)
-            .or(() -> userRepository.findByUsername(normalized))
-            .orElseThrow(() -> new IllegalArgumentException("User not found"));
-    }
-
     private String buildStorageUrl(String objectKey) {
         return "s3://" + bucket + "/" + objectKey;
     }
 
+    private int resolveDailyLimit(String principal) {
+        Optional<AuthenticatedUser> current = userResolutionService.currentPrincipal(principal);
+        if (current.isPresent()) {
+            return resolveDailyLimit(current.get().getPlan(), current.get().getAccountType());
+        }
+        return resolveDailyLimit(userResolutionService.resolve(principal));
+    }
+
     private int resolveDailyLimit(User user) {
-        if (isProUser(user)) {
+        return resolveDailyLimit(user.getPlan(), user.getAccountType());
+    }
+
+    private int resolveDailyLimit(String plan, String accountType) {
+        if (isProUser(plan, accountType)) {
             return dailyLimitPro;
         }
         return dailyLimitFree;
     }
 
-    private boolean isProUser(User user) {
-        String plan = trimToNull(user.getPlan());
-        if ("PRO".equalsIgnoreCase(plan)) {
+    private boolean isProUser(String plan, String accountType) {
+        if ("PRO".equalsIgnoreCase(trimToNull(plan))) {
             return true;
         }
 
-        String accountType = trimToNull(user.getAccountType());
-        return "PRO".equalsIgnoreCase(accountType) || "PREMIUM".equalsIgnoreCase(accountType);
+        String normalizedAccountType = trimToNull(accountType);
+        return "PRO".equalsIgnoreCase(normalizedAccountType) || "PREMIUM".equalsIgnoreCase(normalizedAccountType);
+    }
+
+    public static final class BatchParse {
+        private final User user;
+        private final List<Long> imageIds;
+        private final Map<Long, ImageAsset> imageAssets;
+        private final int dailyLimit;
+        private final int reservedSlots;
+
+        private BatchParse(
+            User user,
+            List<Long> imageIds,
+            Map<Long, ImageAsset> imageAssets,
+            int dailyLimit,
+            int reservedSlots
+        ) {
+            this.user = user;
+            this.imageIds = imageIds;
+            this.imageAssets = imageAssets;
+            this.dailyLimit = dailyLimit;
+            this.reservedSlots = reservedSlots;
+        }
+    }
+
+    private static final class PreparedImage {
+        private final String contentSha256;
+        private final byte[] processed;
+
+        private PreparedImage(String contentSha256, byte[] processed) {
+            this.contentSha256 = contentSha256;
+            this.processed = processed;
+        }
+    }
+
+    private static final class BatchItemResult {
+        private final int index;
+        private final Long imageId;
+        private Receipt receipt;
+        private boolean cacheHit;
+        private String contentSha256;
+        private long latencyMs;
+        private String error;
+
+        private BatchItemResult(int index, Long imageId) {
+            this.index = index;
+            this.imageId = imageId;
+        }
     }
 }
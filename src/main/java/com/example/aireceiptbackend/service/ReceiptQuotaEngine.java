@@ -0,0 +1,203 @@
+package com.example.aireceiptbackend.service;
+
+import com.example.aireceiptbackend.exception.DailyReceiptLimitExceededException;
+import com.example.aireceiptbackend.model.User;
+import com.example.aireceiptbackend.repository.ReceiptDailyUsageRepository;
+import com.example.aireceiptbackend.repository.ReceiptRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Daily scan quota held in memory: one atomic counter per user and day, so reservations are a CAS
+ * instead of a row lock. Counters are warmed from receipt_daily_usage (or today's receipt count when
+ * no row exists yet), and the net change since the last flush is written back in one transaction; a
+ * counter without a row inserts its absolute value, so the receipt-count seed is persisted too.
+ * Assumes a single application instance owns the quota; use {@code app.receipt.quota.mode=database}
+ * when running several.
+ */
+@Service
+public class ReceiptQuotaEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(ReceiptQuotaEngine.class);
+
+    private final ReceiptDailyUsageRepository receiptDailyUsageRepository;
+    private final ReceiptRepository receiptRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<CounterKey, DailyCounter> counters = new ConcurrentHashMap<>();
+
+    public ReceiptQuotaEngine(
+        ReceiptDailyUsageRepository receiptDailyUsageRepository,
+        ReceiptRepository receiptRepository,
+        TransactionTemplate transactionTemplate
+    ) {
+        this.receiptDailyUsageRepository = receiptDailyUsageRepository;
+        this.receiptRepository = receiptRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    public void reserve(User user, int count, int dailyLimit) {
+        DailyCounter counter = counter(user, LocalDate.now(), dailyLimit);
+        while (true) {
+            int used = counter.used.get();
+            if (used + count > dailyLimit) {
+                throw new DailyReceiptLimitExceededException(
+                    String.format("Daily receipt scan limit reached (%d scans/day)", dailyLimit)
+                );
+            }
+            if (counter.used.compareAndSet(used, used + count)) {
+                counter.pendingDelta.addAndGet(count);
+                return;
+            }
+        }
+    }
+
+    public void release(User user, int count, int dailyLimit) {
+        DailyCounter counter = counter(user, LocalDate.now(), dailyLimit);
+        while (true) {
+            int used = counter.used.get();
+            int released = Math.min(used, count);
+            if (released == 0) {
+                return;
+            }
+            if (counter.used.compareAndSet(used, used - released)) {
+                counter.pendingDelta.addAndGet(-released);
+                return;
+            }
+        }
+    }
+
+    public int getUsed(User user, int dailyLimit) {
+        return counter(user, LocalDate.now(), dailyLimit).used.get();
+    }
+
+    @Scheduled(
+        fixedDelayString = "${app.receipt.quota.flush-interval-ms:1000}",
+        initialDelayString = "${app.receipt.quota.flush-interval-ms:1000}"
+    )
+    public void flush() {
+        List<Map.Entry<CounterKey, DailyCounter>> dirty = new ArrayList<>();
+        List<Integer> deltas = new ArrayList<>();
+        for (Map.Entry<CounterKey, DailyCounter> entry : counters.entrySet()) {
+            int delta = entry.getValue().pendingDelta.getAndSet(0);
+            if (delta != 0) {
+                dirty.add(entry);
+                deltas.add(delta);
+            }
+        }
+
+        if (!dirty.isEmpty()) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    for (int i = 0; i < dirty.size(); i++) {
+                        CounterKey key = dirty.get(i).getKey();
+                        DailyCounter counter = dirty.get(i).getValue();
+                        int delta = deltas.get(i);
+                        receiptDailyUsageRepository.applyUsageDelta(
+                            key.userId,
+                            key.usageDate,
+                            counter.persisted ? delta : counter.seed + delta,
+                            delta,
+                            counter.limit
+                        );
+                    }
+                });
+                for (Map.Entry<CounterKey, DailyCounter> entry : dirty) {
+                    entry.getValue().persisted = true;
+                }
+            } catch (RuntimeException ex) {
+                for (int i = 0; i < dirty.size(); i++) {
+                    dirty.get(i).getValue().pendingDelta.addAndGet(deltas.get(i));
+                }
+                log.warn("Failed to flush {} daily usage counters; will retry", dirty.size(), ex);
+                return;
+            }
+        }
+
+        LocalDate today = LocalDate.now();
+        counters.entrySet().removeIf(entry ->
+            entry.getKey().usageDate.isBefore(today) && entry.getValue().pendingDelta.get() == 0
+        );
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private DailyCounter counter(User user, LocalDate today, int dailyLimit) {
+        DailyCounter counter = counters.computeIfAbsent(new CounterKey(user.getId(), today), key -> warm(user, today));
+        counter.limit = Math.max(0, dailyLimit);
+        return counter;
+    }
+
+    private DailyCounter warm(User user, LocalDate today) {
+        return receiptDailyUsageRepository.findByUserAndUsageDate(user, today)
+            .map(row -> new DailyCounter(row.getUsedCount(), true))
+            .orElseGet(() -> new DailyCounter(countReceiptsCreated(user, today), false));
+    }
+
+    private int countReceiptsCreated(User user, LocalDate today) {
+        LocalDateTime start = today.atStartOfDay();
+        long count = receiptRepository.countByUserAndCreatedAtGreaterThanEqualAndCreatedAtLessThan(
+            user,
+            start,
+            start.plusDays(1)
+        );
+        return count > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) count;
+    }
+
+    private static final class CounterKey {
+        private final Long userId;
+        private final LocalDate usageDate;
+
+        private CounterKey(Long userId, LocalDate usageDate) {
+            this.userId = userId;
+            this.usageDate = usageDate;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof CounterKey)) {
+                return false;
+            }
+            CounterKey that = (CounterKey) other;
+            return Objects.equals(userId, that.userId) && Objects.equals(usageDate, that.usageDate);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, usageDate);
+        }
+    }
+
+    private static final class DailyCounter {
+        private final int seed;
+        private final AtomicInteger used;
+        private final AtomicInteger pendingDelta = new AtomicInteger();
+        private volatile int limit;
+        // Only touched by the flush, which Spring never runs concurrently with itself.
+        private volatile boolean persisted;
+
+        private DailyCounter(int used, boolean persisted) {
+            this.seed = used;
+            this.used = new AtomicInteger(used);
+            this.persisted = persisted;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.aireceiptbackend.service;
+
+import com.example.aireceiptbackend.model.Receipt;
+import com.example.aireceiptbackend.model.ReceiptSpendingRollup;
+import com.example.aireceiptbackend.model.User;
+import com.example.aireceiptbackend.repository.ReceiptSpendingRollupRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Keeps receipt_spending_rollup in step with receipts. Callers take a {@link Snapshot} of a receipt
+ * before changing it and pass it with the new state to {@link #applyChange} inside the same transaction.
+ */
+@Service
+public class ReceiptSpendingRollupService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReceiptSpendingRollupService.class);
+
+    private final ReceiptSpendingRollupRepository receiptSpendingRollupRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public ReceiptSpendingRollupService(
+        ReceiptSpendingRollupRepository receiptSpendingRollupRepository,
+        TransactionTemplate transactionTemplate
+    ) {
+        this.receiptSpendingRollupRepository = receiptSpendingRollupRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    public Snapshot snapshot(Receipt receipt) {
+        if (receipt == null || receipt.getReceiptDate() == null || receipt.getUser() == null) {
+            return null;
+        }
+        return new Snapshot(
+            receipt.getUser().getId(),
+            receipt.getReceiptDate().withDayOfMonth(1),
+            orDefault(receipt.getCategory(), "Other"),
+            orDefault(receipt.getCurrency(), "USD"),
+            receipt.getTotalAmount() != null ? receipt.getTotalAmount() : BigDecimal.ZERO
+        );
+    }
+
+    @Transactional
+    public void applyChange(Snapshot before, Snapshot after) {
+        if (Objects.equals(before, after)) {
+            return;
+        }
+        if (before != null) {
+            apply(before, before.amount.negate(), -1);
+        }
+        if (after != null) {
+            apply(after, after.amount, 1);
+        }
+    }
+
+    public List<ReceiptSpendingRollup> getMonth(User user, LocalDate monthStart) {
+        return receiptSpendingRollupRepository.findActiveByUserAndMonthStart(user, monthStart);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        if (receiptSpendingRollupRepository.count() == 0) {
+            rebuildAll();
+        }
+    }
+
+    /**
+     * Recomputes every user's rollup from receipts, one user per transaction so no
+     * long-running lock is held across the whole table.
+     */
+    @Scheduled(cron = "${app.receipt.spending-rollup.rebuild-cron:0 30 3 * * *}")
+    public void rebuildAll() {
+        List<Long> userIds = receiptSpendingRollupRepository.findUserIdsToRebuild();
+        int failed = 0;
+        for (Long userId : userIds) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    receiptSpendingRollupRepository.deleteByUserId(userId);
+                    receiptSpendingRollupRepository.rebuildForUser(userId);
+                });
+            } catch (RuntimeException ex) {
+                failed++;
+                log.warn("Failed to rebuild spending rollup for user {}", userId, ex);
+            }
+        }
+        log.info("Rebuilt spending rollup for {} users ({} failed)", userIds.size() - failed, failed);
+    }
+
+    private void apply(Snapshot key, BigDecimal amount, int count) {
+        receiptSpendingRollupRepository.applyDelta(
+            key.userId,
+            key.monthStart,
+            key.category,
+            key.currency,
+            amount,
+            count
+        );
+    }
+
+    private String orDefault(String value, String fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? fallback : trimmed;
+    }
+
+    public static final class Snapshot {
+        private final Long userId;
+        private final LocalDate monthStart;
+        private final String category;
+        private final String currency;
+        private final BigDecimal amount;
+
+        private Snapshot(Long userId, LocalDate monthStart, String category, String currency, BigDecimal amount) {
+            this.userId = userId;
+            this.monthStart = monthStart;
+            this.category = category;
+            this.currency = currency;
+            this.amount = amount;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Snapshot)) {
+                return false;
+            }
+            Snapshot that = (Snapshot) other;
+            return Objects.equals(userId, that.userId)
+                && Objects.equals(monthStart, that.monthStart)
+                && Objects.equals(category, that.category)
+                && Objects.equals(currency, that.currency)
+                && amount.compareTo(that.amount) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, monthStart, category, currency);
+        }
+    }
+}
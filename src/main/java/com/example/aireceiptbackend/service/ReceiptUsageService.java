@@ -5,62 +5,138 @@ import com.example.aireceiptbackend.model.ReceiptDailyUsage;
 import com.example.aireceiptbackend.model.User;
 import com.example.aireceiptbackend.repository.ReceiptDailyUsageRepository;
 import com.example.aireceiptbackend.repository.ReceiptRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
+/**
+ * Daily scan quota. In memory mode (the default) calls go straight to {@link ReceiptQuotaEngine} and never
+ * touch a connection; only database mode runs the row-lock updates, each in its own short transaction.
+ */
 @Service
 public class ReceiptUsageService {
 
     private final ReceiptDailyUsageRepository receiptDailyUsageRepository;
     private final ReceiptRepository receiptRepository;
+    private final ReceiptQuotaEngine receiptQuotaEngine;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean inMemory;
 
     public ReceiptUsageService(
         ReceiptDailyUsageRepository receiptDailyUsageRepository,
-        ReceiptRepository receiptRepository
+        ReceiptRepository receiptRepository,
+        ReceiptQuotaEngine receiptQuotaEngine,
+        TransactionTemplate transactionTemplate,
+        @Value("${app.receipt.quota.mode:memory}") String quotaMode
     ) {
         this.receiptDailyUsageRepository = receiptDailyUsageRepository;
         this.receiptRepository = receiptRepository;
+        this.receiptQuotaEngine = receiptQuotaEngine;
+        this.transactionTemplate = transactionTemplate;
+        this.inMemory = !"database".equalsIgnoreCase(quotaMode == null ? "" : quotaMode.trim());
     }
 
-    @Transactional
     public void reserveDailyScanSlot(User user, int dailyLimit) {
         if (dailyLimit < 0) {
             return;
         }
+        if (inMemory) {
+            receiptQuotaEngine.reserve(user, 1, dailyLimit);
+            return;
+        }
 
-        LocalDate today = LocalDate.now();
-        int existingReceiptCount = countExistingReceiptsToday(user, today);
-        receiptDailyUsageRepository.ensureUsageRow(user.getId(), today, existingReceiptCount, dailyLimit);
+        transactionTemplate.executeWithoutResult(status -> {
+            LocalDate today = LocalDate.now();
+            ensureUsageRow(user, today, dailyLimit);
+
+            int updated = receiptDailyUsageRepository.reserveOne(user, today, dailyLimit);
+            if (updated == 0) {
+                throw new DailyReceiptLimitExceededException(
+                    String.format("Daily receipt scan limit reached (%d scans/day)", dailyLimit)
+                );
+            }
+        });
+    }
+
+    public void releaseDailyScanSlot(User user, int dailyLimit) {
+        if (dailyLimit < 0) {
+            return;
+        }
+        if (inMemory) {
+            receiptQuotaEngine.release(user, 1, dailyLimit);
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status ->
+            receiptDailyUsageRepository.releaseOne(user, LocalDate.now())
+        );
+    }
 
-        int updated = receiptDailyUsageRepository.reserveOne(user, today, dailyLimit);
-        if (updated == 0) {
-            throw new DailyReceiptLimitExceededException(
-                String.format("Daily receipt scan limit reached (%d scans/day)", dailyLimit)
-            );
+    /**
+     * Reserves {@code count} scans in one statement: either all of them fit under the limit or none are taken.
+     */
+    public void reserveDailyScanSlots(User user, int count, int dailyLimit) {
+        if (dailyLimit < 0 || count <= 0) {
+            return;
+        }
+        if (inMemory) {
+            receiptQuotaEngine.reserve(user, count, dailyLimit);
+            return;
         }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            LocalDate today = LocalDate.now();
+            ensureUsageRow(user, today, dailyLimit);
+
+            int updated = receiptDailyUsageRepository.reserveMany(user, today, count, dailyLimit);
+            if (updated == 0) {
+                throw new DailyReceiptLimitExceededException(
+                    String.format("Daily receipt scan limit reached (%d scans/day), %d requested", dailyLimit, count)
+                );
+            }
+        });
     }
 
-    @Transactional
-    public void releaseDailyScanSlot(User user) {
-        receiptDailyUsageRepository.releaseOne(user, LocalDate.now());
+    public void releaseDailyScanSlots(User user, int count, int dailyLimit) {
+        if (dailyLimit < 0 || count <= 0) {
+            return;
+        }
+        if (inMemory) {
+            receiptQuotaEngine.release(user, count, dailyLimit);
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status ->
+            receiptDailyUsageRepository.releaseMany(user.getId(), LocalDate.now(), count)
+        );
     }
 
-    @Transactional
+    /**
+     * Never writes: uses today's usage row when it exists and only falls back to counting receipts when it does not.
+     */
     public long getUsedToday(User user, int dailyLimit) {
         LocalDate today = LocalDate.now();
         if (dailyLimit < 0) {
             return countExistingReceiptsToday(user, today);
         }
+        if (inMemory) {
+            return receiptQuotaEngine.getUsed(user, dailyLimit);
+        }
 
-        int existingReceiptCount = countExistingReceiptsToday(user, today);
-        receiptDailyUsageRepository.ensureUsageRow(user.getId(), today, existingReceiptCount, dailyLimit);
         return receiptDailyUsageRepository.findByUserAndUsageDate(user, today)
             .map(ReceiptDailyUsage::getUsedCount)
             .map(Integer::longValue)
-            .orElse((long) existingReceiptCount);
+            .orElseGet(() -> (long) countExistingReceiptsToday(user, today));
+    }
+
+    // The receipt count only seeds a new row; once today's row exists the reserve update maintains it.
+    private void ensureUsageRow(User user, LocalDate today, int dailyLimit) {
+        if (receiptDailyUsageRepository.existsByUserAndUsageDate(user, today)) {
+            return;
+        }
+        int existingReceiptCount = countExistingReceiptsToday(user, today);
+        receiptDailyUsageRepository.ensureUsageRow(user.getId(), today, existingReceiptCount, dailyLimit);
     }
 
     private int countExistingReceiptsToday(User user, LocalDate today) {
@@ -0,0 +1,35 @@
+package com.example.aireceiptbackend.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Caps the streamed responses (batch NDJSON, SSE) running on the MVC async executor at once. A permit
+ * is taken before any quota is reserved, so an overloaded server answers 503 instead of queueing work
+ * it has already charged for; the streaming body releases it when it finishes.
+ */
+@Service
+public class StreamingResponseLimiter {
+
+    private final int maxConcurrent;
+    private final Semaphore permits;
+
+    public StreamingResponseLimiter(@Value("${app.receipt.stream.max-concurrent:64}") int maxConcurrent) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.permits = new Semaphore(this.maxConcurrent);
+    }
+
+    public boolean tryAcquire() {
+        return permits.tryAcquire();
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+}
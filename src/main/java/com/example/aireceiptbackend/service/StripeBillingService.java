@@ -36,6 +36,7 @@ public class StripeBillingService {
     private static final String PLAN_PRO = "PRO";
 
     private final UserRepository userRepository;
+    private final UserResolutionService userResolutionService;
     private final ReceiptUsageService receiptUsageService;
     private final StripeWebhookEventRepository stripeWebhookEventRepository;
     private final String stripeSecretKey;
@@ -46,6 +47,7 @@ public class StripeBillingService {
 
     public StripeBillingService(
         UserRepository userRepository,
+        UserResolutionService userResolutionService,
         ReceiptUsageService receiptUsageService,
         StripeWebhookEventRepository stripeWebhookEventRepository,
         @Value("${stripe.secret-key:}") String stripeSecretKey,
@@ -56,6 +58,7 @@ public class StripeBillingService {
         @Value("${app.receipt.daily-limit-pro:100}") int dailyLimitPro
     ) {
         this.userRepository = userRepository;
+        this.userResolutionService = userResolutionService;
         this.receiptUsageService = receiptUsageService;
         this.stripeWebhookEventRepository = stripeWebhookEventRepository;
         this.stripeSecretKey = stripeSecretKey == null ? "" : stripeSecretKey.trim();
@@ -84,7 +87,7 @@ public class StripeBillingService {
         ensureStripeApiConfigured();
         Stripe.apiKey = stripeSecretKey;
 
-        User user = resolveUser(principal);
+        User user = userResolutionService.resolveFresh(principal);
         String stripeCustomerId = ensureStripeCustomerId(user);
 
         try {
@@ -124,7 +127,7 @@ public class StripeBillingService {
         ensureStripeApiConfigured();
         Stripe.apiKey = stripeSecretKey;
 
-        User user = resolveUser(principal);
+        User user = userResolutionService.resolve(principal);
         String stripeCustomerId = trimToNull(user.getStripeCustomerId());
         if (stripeCustomerId == null) {
             throw new IllegalArgumentException("Stripe customer not found for current user");
@@ -147,7 +150,7 @@ public class StripeBillingService {
 
     @Transactional(readOnly = true)
     public BillingStatusResponse getMyBillingStatus(String principal) {
-        User user = resolveUser(principal);
+        User user = userResolutionService.resolve(principal);
         BillingStatusResponse response = new BillingStatusResponse();
         response.setPlan(normalizePlan(user.getPlan()));
         response.setSubscriptionStatus(trimToNull(user.getSubscriptionStatus()));
@@ -157,9 +160,9 @@ public class StripeBillingService {
         return response;
     }
 
-    @Transactional
+    @Transactional(readOnly = true)
     public BillingUsageResponse getMyBillingUsage(String principal) {
-        User user = resolveUser(principal);
+        User user = userResolutionService.resolve(principal);
         int dailyLimit = resolveDailyLimit(user);
         long usedToday = countUsedToday(user);
 
@@ -286,6 +289,7 @@ public class StripeBillingService {
             log.info("Synced Stripe checkout session {} to user {}", session.getId(), user.getId());
         } else {
             userRepository.save(user);
+            userResolutionService.evict(user);
         }
     }
 
@@ -327,6 +331,7 @@ public class StripeBillingService {
         user.setStripeSubscriptionId(subscriptionId);
         applySubscriptionToUser(user, subscription);
         userRepository.save(user);
+        userResolutionService.evict(user);
         log.info("Synced Stripe subscription {} to user {}", subscriptionId, user.getId());
     }
 
@@ -339,6 +344,7 @@ public class StripeBillingService {
             user.setStripeCustomerId(trimToNull(subscription.getCustomer()));
             applySubscriptionToUser(user, subscription);
             userRepository.save(user);
+            userResolutionService.evict(user);
         } catch (StripeException ex) {
             throw new IllegalStateException("Failed to sync Stripe subscription");
         }
@@ -403,6 +409,7 @@ public class StripeBillingService {
             stripeCustomerId = customer.getId();
             user.setStripeCustomerId(stripeCustomerId);
             userRepository.save(user);
+            userResolutionService.evict(user);
             return stripeCustomerId;
         } catch (StripeException ex) {
             throw new IllegalStateException("Failed to create Stripe customer");
@@ -429,16 +436,6 @@ public class StripeBillingService {
         }
     }
 
-    private User resolveUser(String principal) {
-        String normalized = trimToNull(principal);
-        if (normalized == null || "anonymousUser".equals(normalized)) {
-            throw new IllegalArgumentException("Unauthorized");
-        }
-        return userRepository.findByEmail(normalized)
-            .or(() -> userRepository.findByUsername(normalized))
-            .orElseThrow(() -> new IllegalArgumentException("User not found"));
-    }
-
     private String trimToNull(String value) {
         if (value == null) {
             return null;
@@ -0,0 +1,149 @@
+package com.example.aireceiptbackend.service;
+
+import com.example.aireceiptbackend.model.ReceiptExtraction;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Offline stand-in for the model, for load testing the rest of the parse pipeline. The image is read
+ * in full and hashed, and the hash seeds every choice, so the same image always yields the same
+ * canned extraction, latency and (when failure-rate is set) failure. Latency is log-normal around
+ * latency-median-ms.
+ */
+@Service
+@ConditionalOnProperty(name = "app.receipt.extractor.provider", havingValue = "stub")
+public class StubReceiptExtractor implements ReceiptExtractor {
+
+    private static final Logger log = LoggerFactory.getLogger(StubReceiptExtractor.class);
+
+    private static final String DEFAULT_EXTRACTIONS = "[" +
+        "{\"merchantName\":\"Corner Market\",\"currency\":\"USD\",\"category\":\"Food\",\"subtotal\":\"23.40\",\"tax\":\"1.87\",\"total\":\"25.27\"," +
+        "\"items\":[{\"description\":\"Bananas\",\"quantity\":\"1\",\"unitPrice\":\"2.40\",\"totalPrice\":\"2.40\"}," +
+        "{\"description\":\"Coffee beans\",\"quantity\":\"1\",\"unitPrice\":\"14.00\",\"totalPrice\":\"14.00\"}," +
+        "{\"description\":\"Oat milk\",\"quantity\":\"2\",\"unitPrice\":\"3.50\",\"totalPrice\":\"7.00\"}]}," +
+        "{\"merchantName\":\"City Transit\",\"currency\":\"USD\",\"category\":\"Transportation\",\"subtotal\":\"33.00\",\"tax\":\"0.00\",\"total\":\"33.00\"," +
+        "\"items\":[{\"description\":\"Monthly pass top-up\",\"quantity\":\"1\",\"unitPrice\":\"33.00\",\"totalPrice\":\"33.00\"}]}," +
+        "{\"merchantName\":\"Hardware Depot\",\"currency\":\"USD\",\"category\":\"Shopping\",\"subtotal\":\"58.97\",\"tax\":\"4.72\",\"total\":\"63.69\"," +
+        "\"items\":[{\"description\":\"Drill bits\",\"quantity\":\"1\",\"unitPrice\":\"19.99\",\"totalPrice\":\"19.99\"}," +
+        "{\"description\":\"Wood screws\",\"quantity\":\"3\",\"unitPrice\":\"12.99\",\"totalPrice\":\"38.98\"}]}" +
+        "]";
+
+    private final ObjectMapper objectMapper;
+    private final String model;
+    private final long latencyMedianMs;
+    private final double latencySigma;
+    private final double failureRate;
+    private final List<JsonNode> extractions;
+
+    public StubReceiptExtractor(
+        ObjectMapper objectMapper,
+        ResourceLoader resourceLoader,
+        @Value("${app.receipt.extractor.stub.model:stub}") String model,
+        @Value("${app.receipt.extractor.stub.latency-median-ms:1200}") long latencyMedianMs,
+        @Value("${app.receipt.extractor.stub.latency-sigma:0.4}") double latencySigma,
+        @Value("${app.receipt.extractor.stub.failure-rate:0}") double failureRate,
+        @Value("${app.receipt.extractor.stub.extractions-location:}") String extractionsLocation
+    ) throws IOException {
+        this.objectMapper = objectMapper;
+        this.model = model;
+        this.latencyMedianMs = Math.max(0, latencyMedianMs);
+        this.latencySigma = Math.max(0, latencySigma);
+        this.failureRate = Math.min(1, Math.max(0, failureRate));
+        this.extractions = loadExtractions(resourceLoader, extractionsLocation);
+        log.warn("Receipt extraction uses the stub provider; results are canned and not read from images");
+    }
+
+    @Override
+    public boolean isConfigured() {
+        return true;
+    }
+
+    @Override
+    public String getModel() {
+        return model;
+    }
+
+    @Override
+    public String getPromptVersion() {
+        return "stub";
+    }
+
+    @Override
+    public ReceiptExtraction extractReceipt(String mimeType, ImageSource image) throws IOException {
+        Random random = new Random(seed(image));
+        long latencyMs = Math.round(latencyMedianMs * Math.exp(latencySigma * random.nextGaussian()));
+        try {
+            Thread.sleep(latencyMs);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during stub extraction");
+        }
+
+        if (random.nextDouble() < failureRate) {
+            throw new IllegalStateException("Stub extraction failed");
+        }
+        ReceiptExtraction extraction = objectMapper.treeToValue(
+            extractions.get(random.nextInt(extractions.size())),
+            ReceiptExtraction.class
+        );
+        if (extraction.getReceiptDate() == null) {
+            extraction.setReceiptDate(LocalDate.now().toString());
+        }
+        extraction.setExtractionModel(model);
+        extraction.setExtractionTier("single");
+        return extraction;
+    }
+
+    private long seed(ImageSource image) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+        byte[] buffer = new byte[8192];
+        try (InputStream stream = image.open()) {
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return ByteBuffer.wrap(digest.digest()).getLong();
+    }
+
+    private List<JsonNode> loadExtractions(ResourceLoader resourceLoader, String location) throws IOException {
+        JsonNode root;
+        if (location == null || location.trim().isEmpty()) {
+            root = objectMapper.readTree(DEFAULT_EXTRACTIONS);
+        } else {
+            Resource resource = resourceLoader.getResource(location.trim());
+            try (InputStream input = resource.getInputStream()) {
+                root = objectMapper.readTree(input);
+            }
+        }
+        if (!root.isArray() || root.size() == 0) {
+            throw new IllegalArgumentException("Stub extractions must be a non-empty JSON array");
+        }
+        List<JsonNode> loaded = new ArrayList<>(root.size());
+        root.forEach(loaded::add);
+        return Collections.unmodifiableList(loaded);
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.aireceiptbackend.service;
+
+import com.example.aireceiptbackend.model.AuthenticatedUser;
+import com.example.aireceiptbackend.model.User;
+import com.example.aireceiptbackend.model.UserAuthState;
+import com.example.aireceiptbackend.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Maps an authenticated principal (JWT subject: email, or username for older tokens) to its User.
+ * {@link #resolve} serves a short-lived detached copy suitable for ownership checks and foreign keys;
+ * flows that modify the user must use {@link #resolveFresh} and call {@link #evict} after saving.
+ */
+@Service
+public class UserResolutionService {
+
+    private final UserRepository userRepository;
+    private final Cache<String, User> usersByPrincipal;
+    private final Cache<Long, UserAuthState> authStates;
+
+    public UserResolutionService(
+        UserRepository userRepository,
+        MeterRegistry meterRegistry,
+        @Value("${app.auth.user-cache.ttl-seconds:60}") long ttlSeconds,
+        @Value("${app.auth.user-cache.max-size:10000}") long maxSize
+    ) {
+        this.userRepository = userRepository;
+        this.usersByPrincipal = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofSeconds(Math.max(1, ttlSeconds)))
+            .maximumSize(Math.max(1, maxSize))
+            .recordStats()
+            .build();
+        this.authStates = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofSeconds(Math.max(1, ttlSeconds)))
+            .maximumSize(Math.max(1, maxSize))
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, usersByPrincipal, "users.by-principal");
+        CaffeineCacheMetrics.monitor(meterRegistry, authStates, "users.auth-state");
+    }
+
+    public User resolve(String principal) {
+        return usersByPrincipal.get(normalize(principal), this::load);
+    }
+
+    public User resolveFresh(String principal) {
+        return load(normalize(principal));
+    }
+
+    /**
+     * Returns a User usable as a query parameter or foreign key without touching the users table when
+     * the request carries a token with a user id. Only {@code getId()} is safe to call on the result
+     * without triggering a load; use {@link #currentPrincipal} for the plan.
+     */
+    public User resolveReference(String principal) {
+        Optional<AuthenticatedUser> current = currentPrincipal(principal);
+        if (current.isPresent()) {
+            return userRepository.getReferenceById(current.get().getUserId());
+        }
+        return resolve(principal);
+    }
+
+    public Optional<AuthenticatedUser> currentPrincipal(String principal) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof AuthenticatedUser)) {
+            return Optional.empty();
+        }
+        AuthenticatedUser current = (AuthenticatedUser) authentication.getPrincipal();
+        if (principal == null || !principal.trim().equals(current.getName())) {
+            return Optional.empty();
+        }
+        return Optional.of(current);
+    }
+
+    public Optional<UserAuthState> getAuthState(Long userId) {
+        if (userId == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(authStates.get(userId, id -> userRepository.findAuthStateById(id).orElse(null)));
+    }
+
+    public void evict(User user) {
+        if (user == null || user.getId() == null) {
+            return;
+        }
+        Long userId = user.getId();
+        evictById(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // A concurrent request could re-cache the old row before this transaction commits.
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictById(userId);
+                }
+            });
+        }
+    }
+
+    private void evictById(Long userId) {
+        usersByPrincipal.asMap().values().removeIf(cached -> userId.equals(cached.getId()));
+        authStates.invalidate(userId);
+    }
+
+    private User load(String principal) {
+        Optional<AuthenticatedUser> current = currentPrincipal(principal);
+        if (current.isPresent()) {
+            return userRepository.findById(current.get().getUserId())
+                .orElseThrow(() -> new IllegalArgumentException("User not found"));
+        }
+        return userRepository.findByEmail(principal)
+            .or(() -> userRepository.findByUsername(principal))
+            .orElseThrow(() -> new IllegalArgumentException("User not found"));
+    }
+
+    private String normalize(String principal) {
+        String normalized = principal != null ? principal.trim() : null;
+        if (normalized == null || normalized.isEmpty() || "anonymousUser".equals(normalized)) {
+            throw new IllegalArgumentException("Unauthorized");
+        }
+        return normalized;
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.aireceiptbackend.util;
+
+import org.apache.http.client.methods.HttpUriRequest;
+
+import java.io.IOException;
+
+/**
+ * Lets another thread abort a blocking Apache HttpClient call. Interrupts do not unblock a socket read,
+ * so the request factory attaches every request it creates to the call bound to the current thread;
+ * {@link #abort()} then closes its connection, or fails the request as soon as it is created.
+ */
+public final class AbortableHttpCall {
+
+    @FunctionalInterface
+    public interface Body<T> {
+        T execute() throws IOException;
+    }
+
+    private static final ThreadLocal<AbortableHttpCall> CURRENT = new ThreadLocal<>();
+
+    private HttpUriRequest request;
+    private boolean aborted;
+
+    public <T> T run(Body<T> body) throws IOException {
+        CURRENT.set(this);
+        try {
+            return body.execute();
+        } finally {
+            CURRENT.remove();
+        }
+    }
+
+    public synchronized void abort() {
+        aborted = true;
+        if (request != null) {
+            request.abort();
+        }
+    }
+
+    public synchronized boolean isAborted() {
+        return aborted;
+    }
+
+    public static boolean isCurrentAborted() {
+        AbortableHttpCall current = CURRENT.get();
+        return current != null && current.isAborted();
+    }
+
+    public static void attach(HttpUriRequest request) {
+        AbortableHttpCall current = CURRENT.get();
+        if (current != null) {
+            current.attachRequest(request);
+        }
+    }
+
+    private synchronized void attachRequest(HttpUriRequest request) {
+        this.request = request;
+        if (aborted) {
+            request.abort();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.aireceiptbackend.util;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the number of tasks running at once on an unbounded executor (one virtual thread per task).
+ * A task submitted while every permit is taken is rejected rather than queued, like a saturated
+ * platform pool with an AbortPolicy.
+ */
+public class BoundedExecutor extends AbstractExecutorService {
+
+    private final ExecutorService delegate;
+    private final Semaphore permits;
+    private final int maxConcurrency;
+
+    public BoundedExecutor(ExecutorService delegate, int maxConcurrency) {
+        this.delegate = delegate;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.permits = new Semaphore(this.maxConcurrency);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (!permits.tryAcquire()) {
+            throw new RejectedExecutionException("All " + maxConcurrency + " task slots are in use");
+        }
+        try {
+            delegate.execute(() -> {
+                try {
+                    command.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+}
@@ -1,39 +1,70 @@
 package com.example.aireceiptbackend.util;
 
+import com.example.aireceiptbackend.model.User;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.impl.TextCodec;
 
+import javax.crypto.spec.SecretKeySpec;
+import java.security.Key;
 import java.util.Date;
 
 public class JwtUtil {
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_PLAN = "plan";
+    public static final String CLAIM_TOKEN_VERSION = "tv";
+
     private static final String DEFAULT_SECRET = "replace_this_with_a_secure_secret";
     private static final long DEFAULT_EXPIRATION_MS = 24 * 60 * 60 * 1000L;
     private static final String SECRET = resolveSecret();
     private static final long EXPIRATION_MS = resolveExpirationMs();
+    // The secret is base64-decoded once (as jjwt does per call for String keys) and the parser is
+    // configured once; it holds no per-parse state, so the single instance is shared by all threads.
+    private static final Key SIGNING_KEY = new SecretKeySpec(
+        TextCodec.BASE64.decode(SECRET),
+        SignatureAlgorithm.HS256.getJcaName()
+    );
+    private static final JwtParser PARSER = Jwts.parser().setSigningKey(SIGNING_KEY);
 
-    public static String generateToken(String subject) {
+    public static String generateToken(User user) {
         Date now = new Date();
         Date exp = new Date(now.getTime() + EXPIRATION_MS);
         return Jwts.builder()
-                .setSubject(subject)
+                .setSubject(user.getEmail())
+                .claim(CLAIM_USER_ID, user.getId())
+                .claim(CLAIM_PLAN, user.getPlan())
+                .claim(CLAIM_TOKEN_VERSION, user.getTokenVersion() != null ? user.getTokenVersion() : 0)
                 .setIssuedAt(now)
                 .setExpiration(exp)
-                .signWith(SignatureAlgorithm.HS256, SECRET)
+                .signWith(SignatureAlgorithm.HS256, SIGNING_KEY)
                 .compact();
     }
 
     public static String getSubjectFromToken(String token) {
+        Claims claims = getClaimsFromToken(token);
+        return claims != null ? claims.getSubject() : null;
+    }
+
+    public static Claims getClaimsFromToken(String token) {
         try {
-            return Jwts.parser()
-                    .setSigningKey(SECRET)
-                    .parseClaimsJws(token)
-                    .getBody()
-                    .getSubject();
+            return PARSER.parseClaimsJws(token).getBody();
         } catch (Exception e) {
             return null;
         }
     }
 
+    public static Long getUserId(Claims claims) {
+        Object value = claims.get(CLAIM_USER_ID);
+        return value instanceof Number ? ((Number) value).longValue() : null;
+    }
+
+    public static int getTokenVersion(Claims claims) {
+        Object value = claims.get(CLAIM_TOKEN_VERSION);
+        return value instanceof Number ? ((Number) value).intValue() : 0;
+    }
+
     private static String resolveSecret() {
         String envSecret = System.getenv("JWT_SECRET");
         if (envSecret != null && !envSecret.trim().isEmpty()) {
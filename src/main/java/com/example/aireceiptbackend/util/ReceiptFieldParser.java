@@ -0,0 +1,53 @@
+package com.example.aireceiptbackend.util;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Parses the string fields the model returns. Shared by extraction validation and persistence so a
+ * value accepted by one is never rejected by the other.
+ */
+public final class ReceiptFieldParser {
+
+    private ReceiptFieldParser() {
+    }
+
+    /**
+     * Accepts an ISO-8601 date or date-time; returns null when the value is blank or unparseable.
+     */
+    public static LocalDate parseDate(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(value.trim());
+        } catch (DateTimeParseException ignored) {
+            try {
+                LocalDateTime dateTime = LocalDateTime.parse(value.trim());
+                return dateTime.toLocalDate();
+            } catch (DateTimeParseException ignoredAgain) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Strips currency symbols and separators; returns null when no number is left.
+     */
+    public static BigDecimal parseAmount(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        String cleaned = value.replaceAll("[^0-9.\\-]", "");
+        if (cleaned.isEmpty() || "-".equals(cleaned) || ".".equals(cleaned)) {
+            return null;
+        }
+        try {
+            return new BigDecimal(cleaned);
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+}
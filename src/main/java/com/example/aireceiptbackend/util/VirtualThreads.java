@@ -0,0 +1,45 @@
+package com.example.aireceiptbackend.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Reflective access to the JDK 21 virtual thread API so the build can keep targeting Java 17
+ * while still running blocking I/O on virtual threads when deployed on a newer runtime.
+ */
+public class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException ex) {
+            return false;
+        }
+    }
+
+    public static ThreadFactory newThreadFactory(String namePrefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Virtual threads are not supported by this JVM", ex);
+        }
+    }
+
+    public static ExecutorService newThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Virtual threads are not supported by this JVM", ex);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.aireceiptbackend.controller;
+
+import com.example.aireceiptbackend.model.ImageAsset;
+import com.example.aireceiptbackend.model.Receipt;
+import com.example.aireceiptbackend.model.ReceiptItem;
+import com.example.aireceiptbackend.model.User;
+import com.example.aireceiptbackend.repository.ImageAssetRepository;
+import com.example.aireceiptbackend.repository.ReceiptRepository;
+import com.example.aireceiptbackend.repository.UserRepository;
+import com.example.aireceiptbackend.util.JwtUtil;
+import net.ttddyy.dsproxy.QueryCountHolder;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "app.receipt.extractor.provider=stub")
+@AutoConfigureMockMvc
+class ReceiptListQueryCountTest {
+
+    private static final LocalDate RECEIPT_DATE = LocalDate.of(2026, 3, 10);
+
+    @TestConfiguration
+    static class CountingDataSourceConfig {
+
+        // datasource-proxy counts statements per thread, so scheduled jobs do not leak into the counts.
+        @Bean
+        static BeanPostProcessor countingDataSourcePostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof DataSource) {
+                        return ProxyDataSourceBuilder.create((DataSource) bean).countQuery().build();
+                    }
+                    return bean;
+                }
+            };
+        }
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ImageAssetRepository imageAssetRepository;
+
+    @Autowired
+    private ReceiptRepository receiptRepository;
+
+    @Test
+    void listingCostsTheSameNumberOfStatementsForAnyReceiptCount() throws Exception {
+        User few = createUser("list-few", 2);
+        User many = createUser("list-many", 12);
+
+        String range = "?start=2026-03-01&end=2026-03-31";
+        assertEquals(statements(few, get("/receipts/me"), 2), statements(many, get("/receipts/me"), 12));
+        assertEquals(
+            statements(few, get("/receipts/me/range" + range), 2),
+            statements(many, get("/receipts/me/range" + range), 12)
+        );
+        assertEquals(
+            statements(few, get("/receipts/me?limit=50&includeItems=true"), 2),
+            statements(many, get("/receipts/me?limit=50&includeItems=true"), 12)
+        );
+    }
+
+    private long statements(User user, MockHttpServletRequestBuilder request, int expectedReceipts) throws Exception {
+        request.header("Authorization", "Bearer " + JwtUtil.generateToken(user));
+        QueryCountHolder.clear();
+        mockMvc.perform(request)
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$..merchantName").value(org.hamcrest.Matchers.hasSize(expectedReceipts)));
+        return QueryCountHolder.getGrandTotal().getTotal();
+    }
+
+    private User createUser(String name, int receipts) {
+        User user = new User();
+        user.setUsername(name);
+        user.setEmail(name + "@example.com");
+        user.setPassword("unused");
+        user.setIsActive(true);
+        user = userRepository.save(user);
+
+        for (int i = 0; i < receipts; i++) {
+            ImageAsset imageAsset = new ImageAsset();
+            imageAsset.setUser(user);
+            imageAsset.setObjectKey("receipts/" + name + "-" + i + ".jpg");
+            imageAsset = imageAssetRepository.save(imageAsset);
+
+            Receipt receipt = new Receipt();
+            receipt.setUser(user);
+            receipt.setImageAsset(imageAsset);
+            receipt.setMerchantName("Store " + i);
+            receipt.setReceiptDate(RECEIPT_DATE);
+            receipt.setCurrency("USD");
+            receipt.setTotalAmount(new BigDecimal("9.99"));
+            for (int line = 0; line < 2; line++) {
+                ReceiptItem item = new ReceiptItem();
+                item.setDescription("Item " + line);
+                item.setTotalPrice(new BigDecimal("4.99"));
+                receipt.addItem(item);
+            }
+            receiptRepository.save(receipt);
+        }
+        return user;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.aireceiptbackend.controller;
+
+import com.example.aireceiptbackend.model.ImageAsset;
+import com.example.aireceiptbackend.model.ReceiptExtraction;
+import com.example.aireceiptbackend.model.User;
+import com.example.aireceiptbackend.repository.ImageAssetRepository;
+import com.example.aireceiptbackend.repository.ReceiptRepository;
+import com.example.aireceiptbackend.repository.UserRepository;
+import com.example.aireceiptbackend.service.ReceiptExtractor;
+import com.example.aireceiptbackend.util.JwtUtil;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import javax.sql.DataSource;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+@SpringBootTest(properties = {
+    "app.receipt.preprocess.enabled=false",
+    "app.receipt.extraction-cache.enabled=false",
+    "app.receipt.quota.mode=database"
+})
+@AutoConfigureMockMvc
+class ReceiptParseConnectionTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ImageAssetRepository imageAssetRepository;
+
+    @Autowired
+    private ReceiptRepository receiptRepository;
+
+    @MockBean
+    private ReceiptExtractor receiptExtractor;
+
+    @Test
+    void holdsNoConnectionWhileTheExtractionIsInFlight() throws Exception {
+        User user = new User();
+        user.setUsername("parse-connection");
+        user.setEmail("parse-connection@example.com");
+        user.setPassword("unused");
+        user.setIsActive(true);
+        user = userRepository.save(user);
+
+        ImageAsset imageAsset = new ImageAsset();
+        imageAsset.setUser(user);
+        imageAsset.setObjectKey("receipts/parse-connection.jpg");
+        imageAsset.setContentType("image/jpeg");
+        imageAsset = imageAssetRepository.save(imageAsset);
+
+        CountDownLatch extracting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(receiptExtractor.isConfigured()).thenReturn(true);
+        when(receiptExtractor.getModel()).thenReturn("test-model");
+        when(receiptExtractor.getPromptVersion()).thenReturn("test");
+        when(receiptExtractor.extractReceipt(any(), any())).thenAnswer(invocation -> {
+            extracting.countDown();
+            assertTrue(release.await(10, TimeUnit.SECONDS));
+            ReceiptExtraction extraction = new ReceiptExtraction();
+            extraction.setMerchantName("Corner Store");
+            extraction.setReceiptDate("2026-01-15");
+            extraction.setCurrency("USD");
+            extraction.setTotal("12.50");
+            return extraction;
+        });
+
+        String token = JwtUtil.generateToken(user);
+        String body = "{\"imageId\":" + imageAsset.getId() + "}";
+        CompletableFuture<MvcResult> request = CompletableFuture.supplyAsync(() -> {
+            try {
+                return mockMvc.perform(post("/receipts/parse")
+                    .header("Authorization", "Bearer " + token)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(body)).andReturn();
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+
+        try {
+            assertTrue(extracting.await(10, TimeUnit.SECONDS), "extraction was never called");
+            HikariDataSource hikari = dataSource.unwrap(HikariDataSource.class);
+            assertEquals(0, hikari.getHikariPoolMXBean().getActiveConnections());
+        } finally {
+            release.countDown();
+        }
+
+        MvcResult result = request.get(10, TimeUnit.SECONDS);
+        assertEquals(200, result.getResponse().getStatus(), result.getResponse().getContentAsString());
+        assertEquals(1, receiptRepository.count());
+    }
+}
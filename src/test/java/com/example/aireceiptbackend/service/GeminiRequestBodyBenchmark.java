@@ -0,0 +1,135 @@
+package com.example.aireceiptbackend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing one generateContent request body: the pre-serialized template with the mime type and base64
+ * image spliced in, against the per-request HashMap tree (prompt, schema, generationConfig and a base64
+ * String) that was serialized with Jackson before the template. Run after {@code mvn test-compile} with
+ * {@code java -cp target/test-classes:target/classes:<test classpath> com.example.aireceiptbackend.service.GeminiRequestBodyBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeminiRequestBodyBenchmark {
+
+    private static final String PROMPT = "Extract receipt data and return JSON only. " +
+        "Use ISO-8601 date (YYYY-MM-DD). Include items with description, quantity, unitPrice, totalPrice, category(Housing, Utilities, Food, Transportation, Shopping, Health, Entertainment, Subscriptions, Travel, Education).";
+
+    @Param({"1024", "524288"})
+    public int imageBytes;
+
+    private byte[] image;
+    private ObjectMapper objectMapper;
+    private GeminiClient geminiClient;
+
+    @Setup
+    public void setUp() {
+        image = new byte[imageBytes];
+        new Random(20).nextBytes(image);
+        objectMapper = new ObjectMapper();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        geminiClient = new GeminiClient(
+            null, null, null, null, null, objectMapper, meterRegistry,
+            "bench-key", "http://localhost", "gemini-bench", "", 1, 200, 2000, false, 3000
+        );
+    }
+
+    @Benchmark
+    public void requestTemplate() throws IOException {
+        geminiClient.writeRequestBody(OutputStream.nullOutputStream(), "image/jpeg", new ByteArrayInputStream(image));
+    }
+
+    @Benchmark
+    public void requestTree() throws IOException {
+        String base64 = Base64.getEncoder().encodeToString(image);
+        objectMapper.writeValue(OutputStream.nullOutputStream(), buildRequestBody(PROMPT, "image/jpeg", base64));
+    }
+
+    private Map<String, Object> buildRequestBody(String prompt, String mimeType, String base64) {
+        Map<String, Object> inlineData = new HashMap<>();
+        inlineData.put("mime_type", mimeType);
+        inlineData.put("data", base64);
+
+        Map<String, Object> imagePart = new HashMap<>();
+        imagePart.put("inline_data", inlineData);
+
+        Map<String, Object> textPart = new HashMap<>();
+        textPart.put("text", prompt);
+
+        Map<String, Object> content = new HashMap<>();
+        content.put("parts", Arrays.asList(textPart, imagePart));
+
+        Map<String, Object> schema = new HashMap<>();
+        schema.put("type", "object");
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("merchantName", mapSchemaType("string"));
+        properties.put("receiptDate", mapSchemaType("string"));
+        properties.put("currency", mapSchemaType("string"));
+        properties.put("category", mapSchemaType("string"));
+        properties.put("subtotal", mapSchemaType("string"));
+        properties.put("tax", mapSchemaType("string"));
+        properties.put("total", mapSchemaType("string"));
+        Map<String, Object> itemSchema = new HashMap<>();
+        itemSchema.put("type", "object");
+        Map<String, Object> itemProps = new HashMap<>();
+        itemProps.put("description", mapSchemaType("string"));
+        itemProps.put("quantity", mapSchemaType("string"));
+        itemProps.put("unitPrice", mapSchemaType("string"));
+        itemProps.put("totalPrice", mapSchemaType("string"));
+        itemSchema.put("properties", itemProps);
+        Map<String, Object> itemsArray = new HashMap<>();
+        itemsArray.put("type", "array");
+        itemsArray.put("items", itemSchema);
+        properties.put("items", itemsArray);
+        schema.put("properties", properties);
+
+        Map<String, Object> generationConfig = new HashMap<>();
+        generationConfig.put("responseMimeType", "application/json");
+        generationConfig.put("responseSchema", schema);
+
+        Map<String, Object> body = new HashMap<>();
+        body.put("contents", Collections.singletonList(content));
+        body.put("generationConfig", generationConfig);
+        return body;
+    }
+
+    private Map<String, Object> mapSchemaType(String type) {
+        Map<String, Object> schema = new HashMap<>();
+        schema.put("type", type);
+        return schema;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(GeminiRequestBodyBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.aireceiptbackend.service;
+
+import com.example.aireceiptbackend.model.ReceiptExtraction;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a generateContent response: the single streaming pass in {@link GeminiClient}, against the
+ * String body + readTree + substring + readValue path it replaced. Responses carry usage metadata and a
+ * fenced JSON extraction with {@code items} line items. Run after {@code mvn test-compile} with
+ * {@code java -cp target/test-classes:target/classes:<test classpath> com.example.aireceiptbackend.service.GeminiResponseParseBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeminiResponseParseBenchmark {
+
+    @Param({"1", "10", "50"})
+    public int items;
+
+    private byte[] response;
+    private ObjectMapper objectMapper;
+    private GeminiClient geminiClient;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = new ObjectMapper();
+        geminiClient = new GeminiClient(
+            null, null, null, null, null, objectMapper, new SimpleMeterRegistry(),
+            "bench-key", "http://localhost", "gemini-bench", "", 1, 200, 2000, false, 3000
+        );
+
+        StringBuilder text = new StringBuilder("```json\n{\"merchantName\":\"Corner Store\",\"receiptDate\":\"2026-03-10\","
+            + "\"currency\":\"USD\",\"category\":\"Food\",\"subtotal\":\"100.00\",\"tax\":\"8.25\",\"total\":\"108.25\",\"items\":[");
+        for (int i = 0; i < items; i++) {
+            if (i > 0) {
+                text.append(',');
+            }
+            text.append("{\"description\":\"Item number ").append(i)
+                .append("\",\"quantity\":\"2\",\"unitPrice\":\"1.99\",\"totalPrice\":\"3.98\"}");
+        }
+        text.append("]}\n```");
+
+        Map<String, Object> part = Collections.singletonMap("text", text.toString());
+        Map<String, Object> content = Map.of("role", "model", "parts", List.of(part));
+        Map<String, Object> candidate = Map.of("content", content, "finishReason", "STOP", "index", 0);
+        Map<String, Object> usage = Map.of("promptTokenCount", 1290, "candidatesTokenCount", 40 + 30 * items);
+        response = objectMapper.writeValueAsBytes(Map.of(
+            "candidates", List.of(candidate),
+            "usageMetadata", usage,
+            "modelVersion", "gemini-2.5-flash"
+        ));
+    }
+
+    @Benchmark
+    public ReceiptExtraction streamingPass() throws IOException {
+        return geminiClient.parseExtraction(response);
+    }
+
+    @Benchmark
+    public ReceiptExtraction treeAndSubstring() throws IOException {
+        String responseBody = new String(response, StandardCharsets.UTF_8);
+        JsonNode root = objectMapper.readTree(responseBody);
+        JsonNode textNode = root.path("candidates").path(0).path("content").path("parts").path(0).path("text");
+        return objectMapper.readValue(extractJson(textNode.asText()), ReceiptExtraction.class);
+    }
+
+    private String extractJson(String text) {
+        int start = text.indexOf('{');
+        int end = text.lastIndexOf('}');
+        if (start >= 0 && end > start) {
+            return text.substring(start, end + 1);
+        }
+        return text.trim();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(GeminiResponseParseBenchmark.class.getSimpleName()).build()).run();
+    }
+}
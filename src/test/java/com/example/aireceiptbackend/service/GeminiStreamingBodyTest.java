@@ -0,0 +1,153 @@
+package com.example.aireceiptbackend.service;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.example.aireceiptbackend.config.RestTemplateConfig;
+import com.example.aireceiptbackend.model.ReceiptExtraction;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sends a 32 MB image through the production RestTemplate setup to a local fake Gemini endpoint and
+ * checks that the calling thread allocates a small fraction of the image: the base64 body is encoded
+ * while it is written, never built in memory.
+ */
+class GeminiStreamingBodyTest {
+
+    private static final int IMAGE_BYTES = 32 * 1024 * 1024;
+    private static final String RESPONSE = "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":"
+        + "\"{\\\"merchantName\\\":\\\"Corner Store\\\",\\\"total\\\":\\\"12.50\\\",\\\"items\\\":[]}\"}]}}]}";
+
+    private final AtomicLong receivedBytes = new AtomicLong();
+    private HttpServer server;
+    private ExecutorService hedgeExecutor;
+    private CloseableHttpClient httpClient;
+    private GeminiClient geminiClient;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // Outside a Spring context logback defaults to DEBUG, and HttpClient's wire log would copy the body.
+        ((Logger) LoggerFactory.getLogger("org.apache.http")).setLevel(Level.INFO);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            try (InputStream body = exchange.getRequestBody()) {
+                byte[] chunk = new byte[65536];
+                int read;
+                while ((read = body.read(chunk)) >= 0) {
+                    receivedBytes.addAndGet(read);
+                }
+            }
+            byte[] response = RESPONSE.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        hedgeExecutor = Executors.newSingleThreadExecutor();
+        httpClient = HttpClients.createDefault();
+        geminiClient = new GeminiClient(
+            new RestTemplateConfig().geminiRestTemplate(httpClient, 5000, 5000, 20000),
+            new GeminiGateway(meterRegistry, 1, 8, 32, 100, 5000, 15000, 0.7, 0, 10),
+            new GeminiCircuitBreaker(meterRegistry, false, 20, 10, 0.5, 0.8, 15000, 30000, 3),
+            new ReceiptExtractionValidator(new BigDecimal("0.05"), new BigDecimal("0.01")),
+            hedgeExecutor,
+            new ObjectMapper(),
+            meterRegistry,
+            "test-key",
+            "http://127.0.0.1:" + server.getAddress().getPort(),
+            "gemini-test",
+            "",
+            1,
+            200,
+            2000,
+            false,
+            3000
+        );
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.stop(0);
+        hedgeExecutor.shutdownNow();
+        httpClient.close();
+    }
+
+    @Test
+    void encodesTheImageWhileWritingTheRequest() throws IOException {
+        // Warm up class loading and connection setup so only the steady-state request is measured.
+        geminiClient.extractReceipt("image/jpeg", () -> new GeneratedImage(64 * 1024));
+        receivedBytes.set(0);
+
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        ReceiptExtraction extraction = geminiClient.extractReceipt("image/jpeg", () -> new GeneratedImage(IMAGE_BYTES));
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        long base64Bytes = 4L * ((IMAGE_BYTES + 2) / 3);
+        System.out.printf(
+            "image %d bytes, request body %d bytes, allocated on the calling thread %d bytes%n",
+            IMAGE_BYTES, receivedBytes.get(), allocated
+        );
+        assertEquals("Corner Store", extraction.getMerchantName());
+        assertTrue(receivedBytes.get() > base64Bytes, "the whole image was not sent");
+        assertTrue(allocated < IMAGE_BYTES / 16, "request allocated " + allocated + " bytes");
+    }
+
+    // Produces image bytes on demand, so the test itself holds no copy of the image.
+    private static final class GeneratedImage extends InputStream {
+        private long remaining;
+
+        private GeneratedImage(long size) {
+            this.remaining = size;
+        }
+
+        @Override
+        public int read() {
+            if (remaining <= 0) {
+                return -1;
+            }
+            remaining--;
+            return (int) (remaining & 0xff);
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int count = (int) Math.min(length, remaining);
+            for (int i = 0; i < count; i++) {
+                remaining--;
+                buffer[offset + i] = (byte) remaining;
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.aireceiptbackend.service;
+
+import com.example.aireceiptbackend.model.User;
+import com.example.aireceiptbackend.util.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold HMAC verification of a bearer token (what every request paid before the claims cache)
+ * against a {@link JwtVerificationService} cache hit. Run after {@code mvn test-compile} with
+ * {@code java -cp target/test-classes:target/classes:<test classpath> com.example.aireceiptbackend.service.JwtVerificationBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtVerificationBenchmark {
+
+    private String token;
+    private JwtVerificationService verificationService;
+
+    @Setup
+    public void setUp() {
+        User user = new User();
+        user.setId(42L);
+        user.setEmail("bench@example.com");
+        token = JwtUtil.generateToken(user);
+        verificationService = new JwtVerificationService(new SimpleMeterRegistry(), 10_000, 300);
+        verificationService.verify(token);
+    }
+
+    @Benchmark
+    public Claims coldVerification() {
+        return JwtUtil.getClaimsFromToken(token);
+    }
+
+    @Benchmark
+    public Optional<Claims> cacheHit() {
+        return verificationService.verify(token);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JwtVerificationBenchmark.class.getSimpleName()).build()).run();
+    }
+}
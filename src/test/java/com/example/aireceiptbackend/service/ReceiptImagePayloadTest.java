@@ -0,0 +1,120 @@
+package com.example.aireceiptbackend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Payload and parse-path cost of a 12 MP phone photo with and without preprocessing. The stub extractor
+ * (no simulated model latency) reads the whole image like the Gemini body writer does, so its time is the
+ * per-scan cost that grows with the payload; upload and model time on the real provider grow with it too.
+ */
+class ReceiptImagePayloadTest {
+
+    private static final int RUNS = 5;
+
+    @Test
+    void preprocessingShrinksPhonePhotoPayloads() throws IOException {
+        byte[] original = phonePhoto(4032, 3024);
+        ReceiptImagePreprocessor preprocessor =
+            new ReceiptImagePreprocessor(new SimpleMeterRegistry(), true, 1600, true, 0.85f);
+        StubReceiptExtractor extractor = new StubReceiptExtractor(
+            new ObjectMapper(), new DefaultResourceLoader(), "stub", 0, 0, 0, ""
+        );
+
+        byte[] processed = null;
+        long preprocessNanos = Long.MAX_VALUE;
+        long originalParseNanos = Long.MAX_VALUE;
+        long processedParseNanos = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long startedAt = System.nanoTime();
+            processed = preprocessor.preprocess(new ByteArrayInputStream(original), (long) original.length).orElseThrow();
+            preprocessNanos = Math.min(preprocessNanos, System.nanoTime() - startedAt);
+
+            originalParseNanos = Math.min(originalParseNanos, parseNanos(extractor, original));
+            processedParseNanos = Math.min(processedParseNanos, parseNanos(extractor, processed));
+        }
+
+        System.out.printf(
+            "original %d bytes (%d base64), preprocessed %d bytes (%d base64); preprocess %d ms; "
+                + "stub parse original %.2f ms, preprocessed %.2f ms%n",
+            original.length, base64Length(original.length), processed.length, base64Length(processed.length),
+            preprocessNanos / 1_000_000, originalParseNanos / 1e6, processedParseNanos / 1e6
+        );
+        assertTrue(original.length > 2_000_000, "fixture should be phone-sized, was " + original.length);
+        assertTrue(processed.length * 6L < original.length, "preprocessed payload is not under 1/6 of the original");
+        assertTrue(processedParseNanos < originalParseNanos, "parsing the preprocessed payload is not faster");
+    }
+
+    private static long parseNanos(StubReceiptExtractor extractor, byte[] image) throws IOException {
+        long startedAt = System.nanoTime();
+        extractor.extractReceipt("image/jpeg", () -> new ByteArrayInputStream(image));
+        return System.nanoTime() - startedAt;
+    }
+
+    private static long base64Length(long bytes) {
+        return 4 * ((bytes + 2) / 3);
+    }
+
+    // Paper-coloured background with lines of "text" and sensor noise, saved at typical camera quality.
+    private static byte[] phonePhoto(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(new Color(236, 232, 222));
+        graphics.fillRect(0, 0, width, height);
+        Random random = new Random(6);
+        graphics.setColor(new Color(40, 40, 48));
+        for (int y = 200; y < height - 200; y += 70) {
+            for (int x = 300; x < width - 300; x += 30 + random.nextInt(40)) {
+                graphics.fillRect(x, y, 12 + random.nextInt(20), 30);
+            }
+        }
+        graphics.dispose();
+
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                int noise = (int) (random.nextGaussian() * 6);
+                int r = clamp(((row[x] >> 16) & 0xff) + noise);
+                int g = clamp(((row[x] >> 8) & 0xff) + noise);
+                int b = clamp((row[x] & 0xff) + noise);
+                row[x] = (r << 16) | (g << 8) | b;
+            }
+            image.setRGB(0, y, width, 1, row, 0, width);
+        }
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        try (MemoryCacheImageOutputStream output = new MemoryCacheImageOutputStream(jpeg)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(0.92f);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return jpeg.toByteArray();
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
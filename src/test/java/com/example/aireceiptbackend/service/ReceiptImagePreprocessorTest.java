@@ -0,0 +1,80 @@
+package com.example.aireceiptbackend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReceiptImagePreprocessorTest {
+
+    private static final int DARK = 64;
+
+    private final ReceiptImagePreprocessor preprocessor =
+        new ReceiptImagePreprocessor(new SimpleMeterRegistry(), true, 1600, true, 0.85f);
+
+    /**
+     * The fixture is stored as a 200x100 landscape with a dark block in its top-left corner and EXIF
+     * orientation 6, i.e. a portrait photo taken with the phone rotated 90 degrees.
+     */
+    @Test
+    void appliesExifOrientationBeforeStrippingMetadata() throws IOException {
+        BufferedImage output;
+        try (InputStream fixture = getClass().getResourceAsStream("/receipts/receipt-orientation-6.jpg")) {
+            assertNotNull(fixture);
+            output = decode(preprocessor.preprocess(fixture, null).orElseThrow());
+        }
+
+        assertEquals(100, output.getWidth());
+        assertEquals(200, output.getHeight());
+        assertDark(output, output.getWidth() - 6, 5);
+        assertLight(output, 5, 5);
+        assertLight(output, 5, output.getHeight() - 6);
+    }
+
+    @Test
+    void keepsLayoutWhenThereIsNoOrientation() throws IOException {
+        BufferedImage source = new BufferedImage(200, 100, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = source.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, 200, 100);
+        graphics.setColor(Color.BLACK);
+        graphics.fillRect(0, 0, 60, 30);
+        graphics.dispose();
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        ImageIO.write(source, "jpg", jpeg);
+
+        BufferedImage output = decode(
+            preprocessor.preprocess(new ByteArrayInputStream(jpeg.toByteArray()), null).orElseThrow()
+        );
+
+        assertEquals(200, output.getWidth());
+        assertEquals(100, output.getHeight());
+        assertDark(output, 5, 5);
+        assertLight(output, output.getWidth() - 6, 5);
+    }
+
+    private static BufferedImage decode(byte[] jpeg) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(jpeg));
+        assertNotNull(image);
+        return image;
+    }
+
+    private static void assertDark(BufferedImage image, int x, int y) {
+        assertTrue(image.getRaster().getSample(x, y, 0) < DARK, "expected dark pixel at " + x + "," + y);
+    }
+
+    private static void assertLight(BufferedImage image, int x, int y) {
+        assertTrue(image.getRaster().getSample(x, y, 0) > 255 - DARK, "expected light pixel at " + x + "," + y);
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.aireceiptbackend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A burst of parses that each spend their time waiting on I/O, submitted to the platform parse pool
+ * defaults (4 workers, 200 queued) and to the semaphore-bounded thread-per-task executor used in
+ * virtual-thread mode (parse-concurrency 1000). A cached platform pool stands in for the virtual-thread
+ * executor, which needs JDK 21; the bound is what is measured.
+ */
+class BoundedExecutorTest {
+
+    private static final int BURST = 1200;
+    private static final int CEILING = 1000;
+    private static final long IO_WAIT_MS = 20;
+
+    @Test
+    void runsTheWholeBurstUpToTheCeilingAndRejectsPastIt() throws InterruptedException {
+        ThreadPoolExecutor platform = new ThreadPoolExecutor(
+            4, 4, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(200), new ThreadPoolExecutor.AbortPolicy()
+        );
+        Burst pooled = Burst.run(platform, 4);
+        ExecutorService threadPerTask = Executors.newCachedThreadPool();
+        BoundedExecutor bounded = new BoundedExecutor(threadPerTask, CEILING);
+        Burst semaphore = Burst.run(bounded, CEILING);
+
+        System.out.printf(
+            "platform pool: accepted %d, rejected %d, peak running %d, drained in %d ms; "
+                + "bounded: accepted %d, rejected %d, peak running %d, drained in %d ms%n",
+            pooled.accepted, BURST - pooled.accepted, pooled.peak.get(), pooled.drainMillis,
+            semaphore.accepted, BURST - semaphore.accepted, semaphore.peak.get(), semaphore.drainMillis
+        );
+        assertEquals(204, pooled.accepted);
+        assertEquals(4, pooled.peak.get());
+        assertEquals(CEILING, semaphore.accepted);
+        assertEquals(CEILING, semaphore.peak.get());
+        assertTrue(semaphore.drainMillis < pooled.drainMillis);
+
+        platform.shutdown();
+        bounded.shutdown();
+    }
+
+    @Test
+    void rejectsWhileEverySlotIsTakenAndAcceptsOnceOneFrees() throws InterruptedException {
+        BoundedExecutor bounded = new BoundedExecutor(Executors.newCachedThreadPool(), 2);
+        CountDownLatch release = new CountDownLatch(1);
+        bounded.execute(() -> awaitQuietly(release));
+        bounded.execute(() -> awaitQuietly(release));
+
+        assertThrows(RejectedExecutionException.class, () -> bounded.execute(() -> { }));
+        release.countDown();
+
+        // A permit is returned just after its task finishes, so retry briefly.
+        CountDownLatch ran = new CountDownLatch(1);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (ran.getCount() > 0 && System.nanoTime() < deadline) {
+            try {
+                bounded.execute(ran::countDown);
+                assertTrue(ran.await(5, TimeUnit.SECONDS));
+            } catch (RejectedExecutionException ex) {
+                Thread.sleep(1);
+            }
+        }
+        assertEquals(0, ran.getCount());
+        bounded.shutdown();
+        assertTrue(bounded.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Burst {
+        private final AtomicInteger peak = new AtomicInteger();
+        private int accepted;
+        private long drainMillis;
+
+        // Holds every accepted task at a gate until the whole burst is submitted, then times the drain.
+        private static Burst run(ExecutorService executor, int concurrency) throws InterruptedException {
+            Burst burst = new Burst();
+            AtomicInteger running = new AtomicInteger();
+            CountDownLatch gate = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(BURST);
+            for (int i = 0; i < BURST; i++) {
+                try {
+                    executor.execute(() -> {
+                        burst.peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        awaitQuietly(gate);
+                        try {
+                            Thread.sleep(IO_WAIT_MS);
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                        }
+                        running.decrementAndGet();
+                        done.countDown();
+                    });
+                    burst.accepted++;
+                } catch (RejectedExecutionException ex) {
+                    done.countDown();
+                }
+            }
+            while (running.get() < Math.min(burst.accepted, concurrency)) {
+                Thread.sleep(1);
+            }
+            long startedAt = System.nanoTime();
+            gate.countDown();
+            assertTrue(done.await(30, TimeUnit.SECONDS));
+            burst.drainMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+            return burst;
+        }
+    }
+}